@@ -24,6 +24,12 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release-like build the :macrobenchmark module installs and measures
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
@@ -32,6 +38,20 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    androidResources {
+        // Keep the DTC table uncompressed so it can be memory-mapped from the APK
+        noCompress += "bin"
+    }
+    testOptions {
+        // Local tests run the connection service on the JVM; let android.util.Log etc. no-op
+        unitTests.isReturnDefaultValues = true
+        // SoakTest runs a few seconds by default; -PsoakMinutes=180 for a full soak.
+        // Throughput budgets depend on the machine; -PthroughputBudget turns them on.
+        unitTests.all {
+            it.systemProperty("soak.minutes", project.findProperty("soakMinutes") ?: "0")
+            it.systemProperty("throughput.budget", project.hasProperty("throughputBudget"))
+        }
+    }
 }
 
 dependencies {
@@ -0,0 +1,80 @@
+package com.example.myapplication.data;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import com.example.myapplication.obd.Dtc;
+import com.example.myapplication.obd.DtcTable;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trouble code descriptions from the bundled table. The asset is stored uncompressed
+ * and memory-mapped on the first lookup, so nothing is loaded until a scan finds a code.
+ */
+public class DtcDescriptions {
+    private static final String TAG = "DtcDescriptions";
+    private static final String ASSET_NAME = "dtc_descriptions.bin";
+    
+    private final Context context;
+    private final Map<Integer, String> cache = new HashMap<>();
+    private DtcTable table;
+    private boolean loadFailed = false;
+    
+    public DtcDescriptions(Context context) {
+        this.context = context.getApplicationContext();
+    }
+    
+    /**
+     * Description of a code, falling back to its category for codes not in the table
+     */
+    public synchronized String describe(int raw) {
+        String cached = cache.get(raw);
+        if (cached != null) {
+            return cached;
+        }
+        DtcTable table = getTable();
+        String description = table != null ? table.describe(raw) : null;
+        if (description == null) {
+            description = fallback(raw);
+        }
+        cache.put(raw, description);
+        return description;
+    }
+    
+    private DtcTable getTable() {
+        if (table == null && !loadFailed) {
+            try (AssetFileDescriptor fd = context.getAssets().openFd(ASSET_NAME);
+                 FileInputStream in = fd.createInputStream();
+                 FileChannel channel = in.getChannel()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    fd.getStartOffset(), fd.getLength());
+                table = new DtcTable(buffer);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Could not load DTC table: " + e.getMessage());
+                loadFailed = true;
+            }
+        }
+        return table;
+    }
+    
+    private static String fallback(int raw) {
+        String code = Dtc.format(raw);
+        boolean manufacturer = code.charAt(1) == '1'
+            || (code.charAt(0) == 'P' && code.charAt(1) == '3' && code.charAt(2) < '4');
+        String system;
+        switch (code.charAt(0)) {
+            case 'P': system = "Powertrain"; break;
+            case 'C': system = "Chassis"; break;
+            case 'B': system = "Body"; break;
+            default: system = "Network"; break;
+        }
+        return manufacturer ? system + " code, manufacturer specific" : system + " code";
+    }
+}
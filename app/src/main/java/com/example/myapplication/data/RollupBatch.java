@@ -0,0 +1,81 @@
+package com.example.myapplication.data;
+
+import java.util.Arrays;
+
+/**
+ * Column arrays of finished rollup buckets waiting to be written
+ */
+public class RollupBatch implements RollupBuilder.BucketSink {
+    
+    private int[] pids = new int[64];
+    private long[] tiers = new long[64];
+    private long[] times = new long[64];
+    private double[] mins = new double[64];
+    private double[] maxs = new double[64];
+    private double[] avgs = new double[64];
+    private int[] counts = new int[64];
+    private int size = 0;
+    
+    @Override
+    public void onBucket(int pid, long tierMillis, long bucketStart,
+                         double min, double max, double avg, int count) {
+        if (size == pids.length) {
+            int capacity = size * 2;
+            pids = Arrays.copyOf(pids, capacity);
+            tiers = Arrays.copyOf(tiers, capacity);
+            times = Arrays.copyOf(times, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+            avgs = Arrays.copyOf(avgs, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        pids[size] = pid;
+        tiers[size] = tierMillis;
+        times[size] = bucketStart;
+        mins[size] = min;
+        maxs[size] = max;
+        avgs[size] = avg;
+        counts[size] = count;
+        size++;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public int pid(int index) {
+        return pids[index];
+    }
+    
+    public long tier(int index) {
+        return tiers[index];
+    }
+    
+    public long time(int index) {
+        return times[index];
+    }
+    
+    public double min(int index) {
+        return mins[index];
+    }
+    
+    public double max(int index) {
+        return maxs[index];
+    }
+    
+    public double avg(int index) {
+        return avgs[index];
+    }
+    
+    public int count(int index) {
+        return counts[index];
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+}
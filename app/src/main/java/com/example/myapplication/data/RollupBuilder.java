@@ -0,0 +1,86 @@
+package com.example.myapplication.data;
+
+/**
+ * Builds min/max/avg rollups of the sample stream at 1 s, 10 s and 1 min resolution.
+ * Buckets are aligned to multiples of their width and handed to the sink as soon as
+ * a sample for the next bucket arrives, so tiers grow incrementally with the session.
+ * Signals are mode 01 PIDs (0-255); per-PID state lives in flat arrays.
+ */
+public class RollupBuilder {
+    
+    public static final long[] TIER_MILLIS = { 1_000, 10_000, 60_000 };
+    
+    private static final int MAX_PIDS = 256;
+    private static final int TIERS = TIER_MILLIS.length;
+    
+    public interface BucketSink {
+        void onBucket(int pid, long tierMillis, long bucketStart,
+                      double min, double max, double avg, int count);
+    }
+    
+    private final long[] bucketStart = new long[MAX_PIDS * TIERS];
+    private final double[] min = new double[MAX_PIDS * TIERS];
+    private final double[] max = new double[MAX_PIDS * TIERS];
+    private final double[] sum = new double[MAX_PIDS * TIERS];
+    private final int[] count = new int[MAX_PIDS * TIERS];
+    
+    public void add(int pid, long timestampMillis, double value, BucketSink sink) {
+        if (pid < 0 || pid >= MAX_PIDS) return;
+        for (int tier = 0; tier < TIERS; tier++) {
+            int slot = pid * TIERS + tier;
+            long start = timestampMillis - Math.floorMod(timestampMillis, TIER_MILLIS[tier]);
+            if (count[slot] > 0 && start > bucketStart[slot]) {
+                emit(pid, tier, slot, sink);
+            }
+            if (count[slot] == 0) {
+                bucketStart[slot] = start;
+                min[slot] = value;
+                max[slot] = value;
+                sum[slot] = value;
+                count[slot] = 1;
+            } else {
+                // Same bucket, or a late sample that we fold into the current one
+                if (value < min[slot]) min[slot] = value;
+                if (value > max[slot]) max[slot] = value;
+                sum[slot] += value;
+                count[slot]++;
+            }
+        }
+    }
+    
+    /**
+     * Emit all partially filled buckets, e.g. when the session ends
+     */
+    public void flush(BucketSink sink) {
+        for (int pid = 0; pid < MAX_PIDS; pid++) {
+            for (int tier = 0; tier < TIERS; tier++) {
+                int slot = pid * TIERS + tier;
+                if (count[slot] > 0) {
+                    emit(pid, tier, slot, sink);
+                }
+            }
+        }
+    }
+    
+    private void emit(int pid, int tier, int slot, BucketSink sink) {
+        sink.onBucket(pid, TIER_MILLIS[tier], bucketStart[slot],
+            min[slot], max[slot], sum[slot] / count[slot], count[slot]);
+        count[slot] = 0;
+    }
+    
+    /**
+     * Pick the coarsest tier that still gives at least one point per pixel
+     *
+     * @return tier width in milliseconds, or 0 when raw samples should be used
+     */
+    public static long tierFor(long spanMillis, int pixelWidth) {
+        long millisPerPixel = spanMillis / Math.max(1, pixelWidth);
+        long chosen = 0;
+        for (long tier : TIER_MILLIS) {
+            if (tier <= millisPerPixel) {
+                chosen = tier;
+            }
+        }
+        return chosen;
+    }
+}
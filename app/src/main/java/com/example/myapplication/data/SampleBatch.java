@@ -0,0 +1,65 @@
+package com.example.myapplication.data;
+
+import com.example.myapplication.obd.SampleSink;
+
+import java.util.Arrays;
+
+/**
+ * Growable column arrays of (pid, time, value) samples, so buffering thousands of
+ * samples doesn't allocate an object per sample
+ */
+public class SampleBatch implements SampleSink {
+    
+    private int[] pids;
+    private long[] times;
+    private double[] values;
+    private int size = 0;
+    
+    public SampleBatch(int initialCapacity) {
+        pids = new int[initialCapacity];
+        times = new long[initialCapacity];
+        values = new double[initialCapacity];
+    }
+    
+    @Override
+    public void onSample(int pid, long timestampMillis, double value) {
+        add(pid, timestampMillis, value);
+    }
+    
+    public void add(int pid, long timestampMillis, double value) {
+        if (size == pids.length) {
+            int capacity = Math.max(16, size * 2);
+            pids = Arrays.copyOf(pids, capacity);
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        pids[size] = pid;
+        times[size] = timestampMillis;
+        values[size] = value;
+        size++;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public int pid(int index) {
+        return pids[index];
+    }
+    
+    public long time(int index) {
+        return times[index];
+    }
+    
+    public double value(int index) {
+        return values[index];
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+}
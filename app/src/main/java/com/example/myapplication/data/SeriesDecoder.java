@@ -0,0 +1,109 @@
+package com.example.myapplication.data;
+
+/**
+ * Reads back what {@link SeriesEncoder} wrote. Reuse one decoder for many blocks
+ * with {@link #reset}; nothing is allocated per sample.
+ */
+public class SeriesDecoder {
+    
+    private byte[] buffer;
+    private int length;
+    private int bitPosition;
+    private int remaining;
+    private boolean first;
+    private long time;
+    private long delta;
+    private long bits;
+    private int leading;
+    private int trailing;
+    
+    /**
+     * Decode count samples from the first length bytes of data
+     */
+    public void reset(byte[] data, int length, int count) {
+        this.buffer = data;
+        this.length = length;
+        this.bitPosition = 0;
+        this.remaining = count;
+        this.first = true;
+        this.delta = 0;
+        this.leading = -1;
+    }
+    
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+    
+    /**
+     * Advance to the next sample, then read it with {@link #time()} and {@link #value()}
+     *
+     * @throws IllegalStateException if the block ends early
+     */
+    public void next() {
+        if (remaining == 0) {
+            throw new IllegalStateException("No more samples");
+        }
+        if (first) {
+            time = readBits(64);
+            bits = readBits(64);
+            first = false;
+        } else {
+            delta += readDeltaOfDelta();
+            time += delta;
+            readValue();
+        }
+        remaining--;
+    }
+    
+    public long time() {
+        return time;
+    }
+    
+    public double value() {
+        return Double.longBitsToDouble(bits);
+    }
+    
+    private long readDeltaOfDelta() {
+        if (readBits(1) == 0) return 0;
+        if (readBits(1) == 0) return signed(readBits(7), 7);
+        if (readBits(1) == 0) return signed(readBits(9), 9);
+        if (readBits(1) == 0) return signed(readBits(12), 12);
+        return readBits(64);
+    }
+    
+    /**
+     * Undo the two's complement truncation; each range reaches one past zero on the positive side
+     */
+    private static long signed(long value, int width) {
+        long half = 1L << (width - 1);
+        return value > half ? value - (1L << width) : value;
+    }
+    
+    private void readValue() {
+        if (readBits(1) == 0) return;
+        if (readBits(1) == 1) {
+            leading = (int) readBits(5);
+            int significant = (int) readBits(6) + 1;
+            trailing = 64 - leading - significant;
+        } else if (leading < 0) {
+            throw new IllegalStateException("Value reuses a window before one was set");
+        }
+        bits ^= readBits(64 - leading - trailing) << trailing;
+    }
+    
+    private long readBits(int count) {
+        if (bitPosition + count > length * 8) {
+            throw new IllegalStateException("Series block truncated");
+        }
+        long value = 0;
+        while (count > 0) {
+            int available = 8 - (bitPosition & 7);
+            int take = Math.min(available, count);
+            int chunk = ((buffer[bitPosition >>> 3] & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            count -= take;
+            bitPosition += take;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.myapplication.data;
+
+import java.util.Arrays;
+
+/**
+ * Compresses one signal's (time, value) pairs Gorilla style: timestamps as
+ * delta-of-delta with variable-length prefixes and values as the XOR against
+ * the previous value, storing only the meaningful bits. Steady polling makes
+ * most timestamps a single bit and slowly changing sensors a handful of bits.
+ *
+ * Bits are packed most significant first into a reusable buffer; {@link SeriesDecoder}
+ * reads them back.
+ */
+public class SeriesEncoder {
+    
+    private byte[] buffer;
+    private int bitPosition = 0;
+    private int count = 0;
+    private long previousTime;
+    private long previousDelta;
+    private long previousBits;
+    private int previousLeading = -1;
+    private int previousTrailing;
+    
+    public SeriesEncoder() {
+        this(4096);
+    }
+    
+    public SeriesEncoder(int initialBytes) {
+        buffer = new byte[initialBytes];
+    }
+    
+    public void add(long timeMillis, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            writeBits(timeMillis, 64);
+            writeBits(bits, 64);
+            previousDelta = 0;
+        } else {
+            long delta = timeMillis - previousTime;
+            writeTimestamp(delta - previousDelta);
+            writeValue(bits ^ previousBits);
+            previousDelta = delta;
+        }
+        previousTime = timeMillis;
+        previousBits = bits;
+        count++;
+    }
+    
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+    
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            // Fits in the previous window, reuse its position
+            writeBits(0b10, 2);
+            writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(significant - 1, 6);
+            writeBits(xor >>> trailing, significant);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+    
+    /**
+     * Append the low bits of value, most significant first
+     */
+    private void writeBits(long value, int bits) {
+        ensureCapacity(bitPosition + bits);
+        while (bits > 0) {
+            int free = 8 - (bitPosition & 7);
+            int take = Math.min(free, bits);
+            int chunk = (int) (value >>> (bits - take)) & ((1 << take) - 1);
+            buffer[bitPosition >>> 3] |= (byte) (chunk << (free - take));
+            bits -= take;
+            bitPosition += take;
+        }
+    }
+    
+    private void ensureCapacity(int bits) {
+        int bytes = (bits + 7) >>> 3;
+        if (bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+        }
+    }
+    
+    public int count() {
+        return count;
+    }
+    
+    /**
+     * Most bytes count samples can take: 128 bits for the first, then at worst 68
+     * timestamp bits and 77 value bits each
+     */
+    public static long maxByteLength(int count) {
+        if (count == 0) return 0;
+        return (128 + (count - 1) * 145L + 7) >>> 3;
+    }
+    
+    /**
+     * Encoded size in bytes, the last byte padded with zero bits
+     */
+    public int byteLength() {
+        return (bitPosition + 7) >>> 3;
+    }
+    
+    /**
+     * The encoded bytes, valid up to {@link #byteLength()} until the next add or reset
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+    
+    /**
+     * Start a new series, keeping the buffer
+     */
+    public void reset() {
+        Arrays.fill(buffer, 0, byteLength(), (byte) 0);
+        bitPosition = 0;
+        count = 0;
+        previousLeading = -1;
+    }
+}
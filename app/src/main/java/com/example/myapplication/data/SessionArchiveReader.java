@@ -0,0 +1,131 @@
+package com.example.myapplication.data;
+
+import com.example.myapplication.obd.SampleSink;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams a session archive written by {@link SessionArchiveWriter} back out,
+ * one block at a time, so archives of any length are read in constant memory.
+ */
+public class SessionArchiveReader {
+    
+    public interface Listener extends SampleSink {
+        void onHeader(String deviceAddress, long startedAt, long endedAt);
+        
+        void onDtc(String code, int mode, long timeMillis);
+    }
+    
+    private final ReadableByteChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    private final SeriesDecoder decoder = new SeriesDecoder();
+    private byte[] block = new byte[8 * 1024];
+    
+    /**
+     * The channel is not closed by the reader
+     */
+    public SessionArchiveReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        in.limit(0);
+    }
+    
+    /**
+     * Read the whole archive, calling the listener for the header, every sample
+     * and every DTC in file order
+     *
+     * @throws IOException if the archive is truncated or not an archive
+     */
+    public void read(Listener listener) throws IOException {
+        require(4 + 2 + 8 + 8 + 2);
+        if (in.getInt() != SessionArchiveWriter.MAGIC) {
+            throw new IOException("Not a session archive");
+        }
+        short version = in.getShort();
+        if (version != SessionArchiveWriter.VERSION) {
+            throw new IOException("Unsupported archive version " + version);
+        }
+        long startedAt = in.getLong();
+        long endedAt = in.getLong();
+        String address = readString(in.getShort() & 0xFFFF);
+        listener.onHeader(address, startedAt, endedAt);
+        
+        while (true) {
+            require(1);
+            byte type = in.get();
+            if (type == SessionArchiveWriter.TYPE_END) {
+                return;
+            } else if (type == SessionArchiveWriter.TYPE_SAMPLES) {
+                readSamples(listener);
+            } else if (type == SessionArchiveWriter.TYPE_DTC) {
+                require(2);
+                String code = readString(in.getShort() & 0xFFFF);
+                require(1 + 8);
+                int mode = in.get() & 0xFF;
+                listener.onDtc(code, mode, in.getLong());
+            } else {
+                throw new IOException("Unknown block type " + type);
+            }
+        }
+    }
+    
+    private void readSamples(Listener listener) throws IOException {
+        require(1 + 4 + 4);
+        int pid = in.get() & 0xFF;
+        int count = in.getInt();
+        int length = in.getInt();
+        // Checked before allocating, a corrupt size must not become an OutOfMemoryError
+        if (count < 0 || count > SessionArchiveWriter.MAX_BLOCK_SAMPLES
+                || length < 0 || length > SeriesEncoder.maxByteLength(count)) {
+            throw new IOException("Corrupt sample block: " + count + " samples in " + length + " bytes");
+        }
+        if (length > block.length) {
+            block = new byte[Math.max(length, block.length * 2)];
+        }
+        readFully(block, length);
+        decoder.reset(block, length, count);
+        try {
+            while (decoder.hasNext()) {
+                decoder.next();
+                listener.onSample(pid, decoder.time(), decoder.value());
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException("Corrupt sample block: " + e.getMessage());
+        }
+    }
+    
+    private String readString(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        readFully(bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private void readFully(byte[] target, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!in.hasRemaining()) {
+                require(1);
+            }
+            int chunk = Math.min(in.remaining(), length - offset);
+            in.get(target, offset, chunk);
+            offset += chunk;
+        }
+    }
+    
+    /**
+     * Make sure at least count bytes are buffered
+     */
+    private void require(int count) throws IOException {
+        if (in.remaining() >= count) return;
+        in.compact();
+        while (in.position() < count) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Session archive truncated");
+            }
+        }
+        in.flip();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.myapplication.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams one recorded session into the compact archive format read by
+ * {@link SessionArchiveReader}.
+ *
+ * Layout, big-endian:
+ * <pre>
+ *   int    magic "OBDS"
+ *   short  version
+ *   long   started at, long ended at (-1 if still open)
+ *   short  address length, UTF-8 device address
+ *   blocks, each starting with a type byte:
+ *     SAMPLES: byte pid, int count, int byte length, {@link SeriesEncoder} bits
+ *     DTC:     short code length, UTF-8 code, byte mode, long time
+ *     END
+ * </pre>
+ * Samples are columnar: each block holds up to {@link #MAX_BLOCK_SAMPLES} samples of
+ * one PID, so samples must be added grouped by PID and in time order within a
+ * PID, the order of the samples index. Only the current block and a fixed output
+ * buffer are held in memory.
+ */
+public class SessionArchiveWriter {
+    
+    public static final int MAGIC = 0x4F424453;
+    public static final short VERSION = 1;
+    public static final int MAX_BLOCK_SAMPLES = 4096;
+    
+    static final byte TYPE_END = 0;
+    static final byte TYPE_SAMPLES = 1;
+    static final byte TYPE_DTC = 2;
+    
+    private final WritableByteChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+    private final SeriesEncoder encoder = new SeriesEncoder();
+    private int blockPid = -1;
+    private long sampleCount = 0;
+    
+    /**
+     * Write the header. The channel is not closed by the writer.
+     */
+    public SessionArchiveWriter(WritableByteChannel channel, String deviceAddress,
+                                long startedAt, long endedAt) throws IOException {
+        this.channel = channel;
+        byte[] address = (deviceAddress != null ? deviceAddress : "").getBytes(StandardCharsets.UTF_8);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putLong(startedAt);
+        out.putLong(endedAt);
+        out.putShort((short) address.length);
+        out.put(address);
+    }
+    
+    public void addSample(int pid, long timeMillis, double value) throws IOException {
+        if (pid != blockPid || encoder.count() == MAX_BLOCK_SAMPLES) {
+            flushBlock();
+            blockPid = pid;
+        }
+        encoder.add(timeMillis, value);
+        sampleCount++;
+    }
+    
+    public void addDtc(String code, int mode, long timeMillis) throws IOException {
+        flushBlock();
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        ensureRoom(1 + 2 + bytes.length + 1 + 8);
+        out.put(TYPE_DTC);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+        out.put((byte) mode);
+        out.putLong(timeMillis);
+    }
+    
+    public long sampleCount() {
+        return sampleCount;
+    }
+    
+    /**
+     * Write the last block and the end marker and push everything to the channel
+     */
+    public void finish() throws IOException {
+        flushBlock();
+        ensureRoom(1);
+        out.put(TYPE_END);
+        drain();
+    }
+    
+    private void flushBlock() throws IOException {
+        int count = encoder.count();
+        if (count == 0) return;
+        int length = encoder.byteLength();
+        ensureRoom(1 + 1 + 4 + 4);
+        out.put(TYPE_SAMPLES);
+        out.put((byte) blockPid);
+        out.putInt(count);
+        out.putInt(length);
+        if (length <= out.remaining()) {
+            out.put(encoder.buffer(), 0, length);
+        } else {
+            // Bigger than the space left, hand it to the channel directly
+            drain();
+            writeFully(ByteBuffer.wrap(encoder.buffer(), 0, length));
+        }
+        encoder.reset();
+    }
+    
+    private void ensureRoom(int bytes) throws IOException {
+        if (out.remaining() < bytes) {
+            drain();
+        }
+    }
+    
+    private void drain() throws IOException {
+        out.flip();
+        writeFully(out);
+        out.clear();
+    }
+    
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
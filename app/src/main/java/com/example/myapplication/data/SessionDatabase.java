@@ -0,0 +1,213 @@
+package com.example.myapplication.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Local SQLite store for recorded diagnostic sessions, their decoded samples and
+ * DTCs, plus the cached vehicle profiles.
+ * Runs in WAL mode so the history views can read while the recorder is writing.
+ */
+public class SessionDatabase extends SQLiteOpenHelper {
+    
+    private static final String DATABASE_NAME = "sessions.db";
+    private static final int DATABASE_VERSION = 3;
+    
+    public static final String TABLE_SESSIONS = "sessions";
+    public static final String TABLE_SAMPLES = "samples";
+    public static final String TABLE_DTCS = "dtcs";
+    public static final String TABLE_ROLLUPS = "rollups";
+    public static final String TABLE_VEHICLE_PROFILES = "vehicle_profiles";
+    
+    private static final String INSERT_SAMPLE =
+        "INSERT INTO " + TABLE_SAMPLES + " (session_id, pid, time, value) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_DTC =
+        "INSERT INTO " + TABLE_DTCS + " (session_id, code, mode, time) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_ROLLUP =
+        "INSERT INTO " + TABLE_ROLLUPS + " (session_id, pid, tier, time, min, max, avg, count)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static SessionDatabase instance;
+    
+    public static synchronized SessionDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    private SessionDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+    
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // With WAL, NORMAL only syncs at checkpoints; a crash can lose the last
+        // transaction but never corrupts the database
+        db.execSQL("PRAGMA synchronous = NORMAL");
+    }
+    
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "device_address TEXT, "
+            + "started_at INTEGER NOT NULL, "
+            + "ended_at INTEGER)");
+        db.execSQL("CREATE TABLE " + TABLE_SAMPLES + " ("
+            + "session_id INTEGER NOT NULL, "
+            + "pid INTEGER NOT NULL, "
+            + "time INTEGER NOT NULL, "
+            + "value REAL NOT NULL)");
+        db.execSQL("CREATE INDEX samples_session_pid_time ON " + TABLE_SAMPLES
+            + " (session_id, pid, time)");
+        db.execSQL("CREATE TABLE " + TABLE_DTCS + " ("
+            + "session_id INTEGER NOT NULL, "
+            + "code TEXT NOT NULL, "
+            + "mode INTEGER NOT NULL, "
+            + "time INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX dtcs_session_time ON " + TABLE_DTCS + " (session_id, time)");
+        createRollupTable(db);
+        createVehicleProfileTable(db);
+    }
+    
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Sessions recorded before v2 have no rollups and fall back to raw samples
+            createRollupTable(db);
+        }
+        if (oldVersion < 3) {
+            createVehicleProfileTable(db);
+        }
+    }
+    
+    private void createRollupTable(SQLiteDatabase db) {
+        // tier is the bucket width in milliseconds, time the bucket start
+        db.execSQL("CREATE TABLE " + TABLE_ROLLUPS + " ("
+            + "session_id INTEGER NOT NULL, "
+            + "pid INTEGER NOT NULL, "
+            + "tier INTEGER NOT NULL, "
+            + "time INTEGER NOT NULL, "
+            + "min REAL NOT NULL, "
+            + "max REAL NOT NULL, "
+            + "avg REAL NOT NULL, "
+            + "count INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX rollups_session_pid_tier_time ON " + TABLE_ROLLUPS
+            + " (session_id, pid, tier, time)");
+    }
+    
+    private void createVehicleProfileTable(SQLiteDatabase db) {
+        // PID lists are stored as text, see VehicleProfileCache
+        db.execSQL("CREATE TABLE " + TABLE_VEHICLE_PROFILES + " ("
+            + "vin TEXT PRIMARY KEY, "
+            + "fingerprint TEXT NOT NULL, "
+            + "supported_pids TEXT NOT NULL, "
+            + "ecu_headers TEXT NOT NULL, "
+            + "poll_pids TEXT NOT NULL, "
+            + "updated_at INTEGER NOT NULL)");
+    }
+    
+    /**
+     * Insert a new session row. Throws instead of returning -1 when the insert fails,
+     * so callers never record samples against a session that doesn't exist.
+     */
+    public long beginSession(String deviceAddress, long startedAt) {
+        ContentValues values = new ContentValues();
+        values.put("device_address", deviceAddress);
+        values.put("started_at", startedAt);
+        return getWritableDatabase().insertOrThrow(TABLE_SESSIONS, null, values);
+    }
+    
+    public void endSession(long sessionId, long endedAt) {
+        ContentValues values = new ContentValues();
+        values.put("ended_at", endedAt);
+        getWritableDatabase().update(TABLE_SESSIONS, values, "id = ?",
+            new String[] { String.valueOf(sessionId) });
+    }
+    
+    /**
+     * Insert a batch of samples and the rollup buckets they completed in one
+     * transaction, with one compiled statement per table
+     */
+    public void insertBatch(long sessionId, SampleBatch samples, RollupBatch rollups) {
+        if (samples.isEmpty() && rollups.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement sampleStatement = db.compileStatement(INSERT_SAMPLE);
+        SQLiteStatement rollupStatement = db.compileStatement(INSERT_ROLLUP);
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < samples.size(); i++) {
+                sampleStatement.bindLong(1, sessionId);
+                sampleStatement.bindLong(2, samples.pid(i));
+                sampleStatement.bindLong(3, samples.time(i));
+                sampleStatement.bindDouble(4, samples.value(i));
+                sampleStatement.executeInsert();
+            }
+            for (int i = 0; i < rollups.size(); i++) {
+                rollupStatement.bindLong(1, sessionId);
+                rollupStatement.bindLong(2, rollups.pid(i));
+                rollupStatement.bindLong(3, rollups.tier(i));
+                rollupStatement.bindLong(4, rollups.time(i));
+                rollupStatement.bindDouble(5, rollups.min(i));
+                rollupStatement.bindDouble(6, rollups.max(i));
+                rollupStatement.bindDouble(7, rollups.avg(i));
+                rollupStatement.bindLong(8, rollups.count(i));
+                rollupStatement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            sampleStatement.close();
+            rollupStatement.close();
+        }
+    }
+    
+    /**
+     * Id of the most recent session recorded from a device, or -1 if there is none
+     */
+    public long latestSessionId(String deviceAddress) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT id FROM " + TABLE_SESSIONS
+                + " WHERE device_address = ? ORDER BY id DESC LIMIT 1", new String[] { deviceAddress })) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+    
+    /**
+     * Delete a session with all its samples, rollups and DTCs
+     */
+    public void deleteSession(long sessionId) {
+        SQLiteDatabase db = getWritableDatabase();
+        String[] args = { String.valueOf(sessionId) };
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete(TABLE_SAMPLES, "session_id = ?", args);
+            db.delete(TABLE_ROLLUPS, "session_id = ?", args);
+            db.delete(TABLE_DTCS, "session_id = ?", args);
+            db.delete(TABLE_SESSIONS, "id = ?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    public void insertDtc(long sessionId, String code, int mode, long time) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(INSERT_DTC);
+        try {
+            statement.bindLong(1, sessionId);
+            statement.bindString(2, code);
+            statement.bindLong(3, mode);
+            statement.bindLong(4, time);
+            statement.executeInsert();
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.myapplication.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Arrays;
+
+/**
+ * Range queries over recorded sessions for charting. The resolution is chosen from
+ * the requested pixel width: long ranges read the 1 s / 10 s / 1 min rollups, short
+ * ones read raw samples, so the number of rows loaded stays close to the number of
+ * pixels however long the session is.
+ */
+public class SessionHistory {
+    
+    /**
+     * One signal over a time range; min and max equal avg for raw samples
+     */
+    public static class Series {
+        public final long resolutionMillis;
+        public long[] times;
+        public double[] min;
+        public double[] max;
+        public double[] avg;
+        public int size;
+        
+        Series(long resolutionMillis, int capacity) {
+            this.resolutionMillis = resolutionMillis;
+            this.times = new long[capacity];
+            this.min = new double[capacity];
+            this.max = new double[capacity];
+            this.avg = new double[capacity];
+        }
+        
+        void add(long time, double minValue, double maxValue, double avgValue) {
+            if (size == times.length) {
+                int capacity = Math.max(16, size * 2);
+                times = Arrays.copyOf(times, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                avg = Arrays.copyOf(avg, capacity);
+            }
+            times[size] = time;
+            min[size] = minValue;
+            max[size] = maxValue;
+            avg[size] = avgValue;
+            size++;
+        }
+    }
+    
+    private final SessionDatabase database;
+    
+    public SessionHistory(SessionDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Load one signal between fromMillis and toMillis (inclusive) for a chart
+     * that is pixelWidth wide. Blocking, call off the main thread.
+     */
+    public Series query(long sessionId, int pid, long fromMillis, long toMillis, int pixelWidth) {
+        long tier = RollupBuilder.tierFor(toMillis - fromMillis, pixelWidth);
+        if (tier > 0) {
+            Series series = queryRollups(sessionId, pid, tier, fromMillis, toMillis, pixelWidth);
+            if (series.size > 0) {
+                return series;
+            }
+            // No rollups, e.g. a session recorded before they existed
+        }
+        return querySamples(sessionId, pid, fromMillis, toMillis, pixelWidth);
+    }
+    
+    // Package-private so tests can stand in for the database
+    Series queryRollups(long sessionId, int pid, long tier, long from, long to, int capacity) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        Series series = new Series(tier, capacity);
+        // A bucket overlaps the range if it starts less than one width before it
+        try (Cursor cursor = db.rawQuery("SELECT time, min, max, avg FROM "
+                + SessionDatabase.TABLE_ROLLUPS
+                + " WHERE session_id = ? AND pid = ? AND tier = ? AND time > ? AND time <= ?"
+                + " ORDER BY time",
+                args(sessionId, pid, tier, from - tier, to))) {
+            while (cursor.moveToNext()) {
+                series.add(cursor.getLong(0), cursor.getDouble(1), cursor.getDouble(2), cursor.getDouble(3));
+            }
+        }
+        return series;
+    }
+    
+    Series querySamples(long sessionId, int pid, long from, long to, int capacity) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        Series series = new Series(0, capacity);
+        try (Cursor cursor = db.rawQuery("SELECT time, value FROM "
+                + SessionDatabase.TABLE_SAMPLES
+                + " WHERE session_id = ? AND pid = ? AND time >= ? AND time <= ?"
+                + " ORDER BY time",
+                args(sessionId, pid, from, to))) {
+            while (cursor.moveToNext()) {
+                double value = cursor.getDouble(1);
+                series.add(cursor.getLong(0), value, value, value);
+            }
+        }
+        return series;
+    }
+    
+    private static String[] args(long... values) {
+        String[] args = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            args[i] = Long.toString(values[i]);
+        }
+        return args;
+    }
+}
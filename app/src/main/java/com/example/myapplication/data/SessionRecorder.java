@@ -0,0 +1,241 @@
+package com.example.myapplication.data;
+
+import android.util.Log;
+
+import com.example.myapplication.obd.SampleSink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records diagnostic sessions to {@link SessionDatabase} from a background writer.
+ * Samples arriving on the receive thread are only appended to an in-memory batch;
+ * the writer swaps batches, rolls them up and inserts each one in a single
+ * transaction, so the receive thread never waits on disk I/O.
+ */
+public class SessionRecorder implements SampleSink {
+    private static final String TAG = "SessionRecorder";
+    
+    public interface ErrorListener {
+        /** Called on the writer thread when a session could not be recorded */
+        void onRecordingFailed(String error);
+    }
+    
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+    
+    private final SessionDatabase database;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private volatile Writer current;
+    private volatile ErrorListener errorListener;
+    
+    public SessionRecorder(SessionDatabase database) {
+        this(database, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+    
+    public SessionRecorder(SessionDatabase database, int batchSize, long flushIntervalMillis) {
+        this.database = database;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+    
+    public void setErrorListener(ErrorListener listener) {
+        this.errorListener = listener;
+    }
+    
+    /**
+     * Start a new session, closing the current one if any. The database row is
+     * created on the writer thread.
+     */
+    public synchronized void start(String deviceAddress) {
+        stop();
+        Writer writer = new Writer(deviceAddress, System.currentTimeMillis());
+        Thread thread = new Thread(writer, "session-writer");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+        current = writer;
+    }
+    
+    /**
+     * Flush what is left and close the session. Returns immediately; the writer
+     * finishes in the background.
+     */
+    public synchronized void stop() {
+        if (current != null) {
+            current.requestStop();
+            current = null;
+        }
+    }
+    
+    public boolean isRecording() {
+        return current != null;
+    }
+    
+    /**
+     * Id of the session being recorded, or -1 if none has been created yet
+     */
+    public long getSessionId() {
+        Writer writer = current;
+        return writer != null ? writer.getSessionId() : -1;
+    }
+    
+    @Override
+    public void onSample(int pid, long timestampMillis, double value) {
+        Writer writer = current;
+        if (writer != null) {
+            writer.add(pid, timestampMillis, value);
+        }
+    }
+    
+    public void recordDtc(String code, int mode, long timestampMillis) {
+        Writer writer = current;
+        if (writer != null) {
+            writer.addDtc(new PendingDtc(code, mode, timestampMillis));
+        }
+    }
+    
+    /**
+     * The writer could not create its session; stop accepting samples for it
+     */
+    private void abandon(Writer writer, String error) {
+        synchronized (this) {
+            if (current == writer) {
+                current = null;
+            }
+        }
+        writer.discard();
+        ErrorListener listener = errorListener;
+        if (listener != null) {
+            listener.onRecordingFailed(error);
+        }
+    }
+    
+    private static final class PendingDtc {
+        final String code;
+        final int mode;
+        final long time;
+        
+        PendingDtc(String code, int mode, long time) {
+            this.code = code;
+            this.mode = mode;
+            this.time = time;
+        }
+    }
+    
+    /**
+     * One session's writer thread and its double-buffered batches
+     */
+    private final class Writer implements Runnable {
+        private final String deviceAddress;
+        private final long startedAt;
+        private SampleBatch filling = new SampleBatch(batchSize);
+        private SampleBatch writing = new SampleBatch(batchSize);
+        private final RollupBuilder rollupBuilder = new RollupBuilder();
+        private final RollupBatch rollups = new RollupBatch();
+        private final List<PendingDtc> pendingDtcs = new ArrayList<>();
+        private boolean stopRequested = false;
+        private boolean discarded = false;
+        private long sessionId = -1;
+        
+        Writer(String deviceAddress, long startedAt) {
+            this.deviceAddress = deviceAddress;
+            this.startedAt = startedAt;
+        }
+        
+        synchronized void add(int pid, long timestampMillis, double value) {
+            if (discarded) return;
+            filling.add(pid, timestampMillis, value);
+            if (filling.size() == batchSize) {
+                notifyAll();
+            }
+        }
+        
+        synchronized void addDtc(PendingDtc dtc) {
+            if (discarded) return;
+            pendingDtcs.add(dtc);
+            notifyAll();
+        }
+        
+        synchronized void requestStop() {
+            stopRequested = true;
+            notifyAll();
+        }
+        
+        synchronized void discard() {
+            discarded = true;
+            filling.clear();
+            pendingDtcs.clear();
+        }
+        
+        synchronized long getSessionId() {
+            return sessionId;
+        }
+        
+        @Override
+        public void run() {
+            long session;
+            try {
+                session = database.beginSession(deviceAddress, startedAt);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not start session: " + e.getMessage(), e);
+                abandon(this, "Could not start session: " + e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                sessionId = session;
+            }
+            Log.d(TAG, "Recording session " + session);
+            
+            List<PendingDtc> dtcs = new ArrayList<>();
+            boolean finished = false;
+            while (!finished) {
+                synchronized (this) {
+                    long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                    long remaining;
+                    while (!stopRequested && filling.size() < batchSize && pendingDtcs.isEmpty()
+                            && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            stopRequested = true;
+                        }
+                    }
+                    finished = stopRequested;
+                    // Swap so the receive thread keeps appending while we write
+                    SampleBatch full = filling;
+                    filling = writing;
+                    writing = full;
+                    dtcs.addAll(pendingDtcs);
+                    pendingDtcs.clear();
+                }
+                
+                for (int i = 0; i < writing.size(); i++) {
+                    rollupBuilder.add(writing.pid(i), writing.time(i), writing.value(i), rollups);
+                }
+                if (finished) {
+                    rollupBuilder.flush(rollups);
+                }
+                
+                try {
+                    database.insertBatch(session, writing, rollups);
+                    for (PendingDtc dtc : dtcs) {
+                        database.insertDtc(session, dtc.code, dtc.mode, dtc.time);
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to write " + writing.size() + " samples: " + e.getMessage(), e);
+                }
+                writing.clear();
+                rollups.clear();
+                dtcs.clear();
+            }
+            
+            try {
+                database.endSession(session, System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not end session: " + e.getMessage(), e);
+            }
+            Log.d(TAG, "Session " + session + " closed");
+        }
+    }
+}
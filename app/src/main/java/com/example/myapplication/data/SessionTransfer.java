@@ -0,0 +1,144 @@
+package com.example.myapplication.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Exports recorded sessions from {@link SessionDatabase} to archive files and
+ * imports them back as new sessions. Both directions stream: rows are read from
+ * a cursor straight into the archive writer, and imported samples are inserted
+ * in batches, so memory use doesn't grow with the session length. Blocking, call
+ * off the main thread.
+ */
+public class SessionTransfer {
+    
+    public static final String FILE_EXTENSION = ".obds";
+    
+    private static final int IMPORT_BATCH_SIZE = 4096;
+    
+    private final SessionDatabase database;
+    
+    public SessionTransfer(SessionDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * @return the number of samples written
+     */
+    public long exportSession(long sessionId, File file) throws IOException {
+        // Stream based channels, java.nio.file needs API 26
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            return exportSession(sessionId, output.getChannel());
+        }
+    }
+    
+    public long exportSession(long sessionId, WritableByteChannel channel) throws IOException {
+        SQLiteDatabase db = database.getReadableDatabase();
+        String[] args = { Long.toString(sessionId) };
+        SessionArchiveWriter writer;
+        try (Cursor cursor = db.rawQuery("SELECT device_address, started_at, ended_at FROM "
+                + SessionDatabase.TABLE_SESSIONS + " WHERE id = ?", args)) {
+            if (!cursor.moveToFirst()) {
+                throw new IOException("No session " + sessionId);
+            }
+            long endedAt = cursor.isNull(2) ? -1 : cursor.getLong(2);
+            writer = new SessionArchiveWriter(channel, cursor.getString(0), cursor.getLong(1), endedAt);
+        }
+        
+        // Walks the (session_id, pid, time) index, already in archive order
+        try (Cursor cursor = db.rawQuery("SELECT pid, time, value FROM " + SessionDatabase.TABLE_SAMPLES
+                + " WHERE session_id = ? ORDER BY pid, time", args)) {
+            while (cursor.moveToNext()) {
+                writer.addSample(cursor.getInt(0), cursor.getLong(1), cursor.getDouble(2));
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT code, mode, time FROM " + SessionDatabase.TABLE_DTCS
+                + " WHERE session_id = ? ORDER BY time", args)) {
+            while (cursor.moveToNext()) {
+                writer.addDtc(cursor.getString(0), cursor.getInt(1), cursor.getLong(2));
+            }
+        }
+        writer.finish();
+        return writer.sampleCount();
+    }
+    
+    /**
+     * @return id of the new session holding the imported data
+     */
+    public long importSession(File file) throws IOException {
+        try (FileInputStream input = new FileInputStream(file)) {
+            return importSession(input.getChannel());
+        }
+    }
+    
+    public long importSession(ReadableByteChannel channel) throws IOException {
+        Importer importer = new Importer();
+        try {
+            new SessionArchiveReader(channel).read(importer);
+            importer.finish();
+        } catch (IOException | RuntimeException e) {
+            importer.abandon();
+            throw e;
+        }
+        return importer.sessionId;
+    }
+    
+    /**
+     * Inserts samples as they are decoded, rolling them up like the recorder does
+     */
+    private final class Importer implements SessionArchiveReader.Listener {
+        private final SampleBatch samples = new SampleBatch(IMPORT_BATCH_SIZE);
+        private final RollupBuilder rollupBuilder = new RollupBuilder();
+        private final RollupBatch rollups = new RollupBatch();
+        private long sessionId = -1;
+        private long endedAt;
+        
+        @Override
+        public void onHeader(String deviceAddress, long startedAt, long endedAt) {
+            sessionId = database.beginSession(deviceAddress, startedAt);
+            this.endedAt = endedAt >= 0 ? endedAt : startedAt;
+        }
+        
+        @Override
+        public void onSample(int pid, long timestampMillis, double value) {
+            samples.add(pid, timestampMillis, value);
+            rollupBuilder.add(pid, timestampMillis, value, rollups);
+            if (samples.size() == IMPORT_BATCH_SIZE) {
+                write();
+            }
+        }
+        
+        @Override
+        public void onDtc(String code, int mode, long timeMillis) {
+            database.insertDtc(sessionId, code, mode, timeMillis);
+        }
+        
+        void finish() {
+            rollupBuilder.flush(rollups);
+            write();
+            database.endSession(sessionId, endedAt);
+        }
+        
+        /**
+         * Remove a partly imported session so a corrupt file leaves nothing behind
+         */
+        void abandon() {
+            if (sessionId >= 0) {
+                database.deleteSession(sessionId);
+            }
+        }
+        
+        private void write() {
+            database.insertBatch(sessionId, samples, rollups);
+            samples.clear();
+            rollups.clear();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.myapplication.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.myapplication.obd.VehicleProbe;
+import com.example.myapplication.obd.VehicleProfile;
+
+import java.util.Locale;
+
+/**
+ * Keeps vehicle profiles in the session database, one row per VIN. Bitmaps,
+ * headers and PIDs are stored as space separated hex so a row can be read in
+ * the sqlite shell.
+ */
+public class VehicleProfileCache implements VehicleProbe.ProfileCache {
+    
+    private final SessionDatabase database;
+    
+    public VehicleProfileCache(SessionDatabase database) {
+        this.database = database;
+    }
+    
+    @Override
+    public VehicleProfile load(String vin) {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery("SELECT fingerprint, supported_pids,"
+                + " ecu_headers, poll_pids FROM " + SessionDatabase.TABLE_VEHICLE_PROFILES + " WHERE vin = ?",
+                new String[] { vin })) {
+            if (!cursor.moveToFirst()) return null;
+            int[] supported = decode(cursor.getString(1));
+            if (supported == null || supported.length != VehicleProfile.BITMAP_WORDS) return null;
+            int[] headers = decode(cursor.getString(2));
+            int[] pollPids = decode(cursor.getString(3));
+            if (headers == null || pollPids == null) return null;
+            return new VehicleProfile(vin, cursor.getString(0), supported, headers, pollPids);
+        }
+    }
+    
+    @Override
+    public void save(VehicleProfile profile) {
+        ContentValues values = new ContentValues();
+        values.put("vin", profile.vin);
+        values.put("fingerprint", profile.fingerprint);
+        values.put("supported_pids", encode(profile.getSupportedBitmaps()));
+        values.put("ecu_headers", encode(profile.getEcuHeaders()));
+        values.put("poll_pids", encode(profile.getPollPids()));
+        values.put("updated_at", System.currentTimeMillis());
+        database.getWritableDatabase().insertWithOnConflict(SessionDatabase.TABLE_VEHICLE_PROFILES, null,
+            values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+    
+    static String encode(int[] values) {
+        StringBuilder text = new StringBuilder();
+        for (int value : values) {
+            if (text.length() > 0) text.append(' ');
+            text.append(Integer.toHexString(value).toUpperCase(Locale.US));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * @return the values, or null if the text is damaged
+     */
+    static int[] decode(String text) {
+        if (text == null) return null;
+        if (text.isEmpty()) return new int[0];
+        String[] parts = text.split(" ");
+        int[] values = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                values[i] = (int) Long.parseLong(parts[i], 16);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.myapplication.io;
+
+/**
+ * Receives the raw bytes of a connection unframed, exactly as each read returned
+ * them. The connection calls sinks after it has framed and dispatched the read's
+ * lines. The array is reused by the reader, so only the given range is valid and
+ * only for the duration of the call.
+ */
+public interface ByteSink {
+    void onBytes(byte[] data, int offset, int length);
+}
@@ -0,0 +1,76 @@
+package com.example.myapplication.io;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the raw byte stream into newline terminated messages.
+ * A single read() can carry half a message or several of them, so bytes are
+ * accumulated here until a line terminator arrives. Both '\n' and '\r' end a
+ * line (the Python server sends '\n', ELM327 adapters send '\r'), and the ELM327
+ * '>' prompt at the start of a line is dropped.
+ */
+public class LineFramer {
+    
+    public interface LineListener {
+        void onLine(String line);
+    }
+    
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1024;
+    
+    private final byte[] pending;
+    private int length = 0;
+    
+    public LineFramer() {
+        this(DEFAULT_MAX_LINE_LENGTH);
+    }
+    
+    public LineFramer(int maxLineLength) {
+        this.pending = new byte[maxLineLength];
+    }
+    
+    /**
+     * Feed bytes from the stream, calling the listener once per complete line
+     */
+    public void feed(byte[] data, int offset, int count, LineListener listener) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == '\n' || b == '\r') {
+                emit(listener);
+            } else if (b == '>' && length == 0) {
+                // ELM327 prompt, not part of any message
+            } else {
+                if (length == pending.length) {
+                    // Over-long line, hand over what we have rather than dropping it
+                    emit(listener);
+                }
+                pending[length++] = b;
+            }
+        }
+    }
+    
+    /**
+     * Number of bytes waiting for a line terminator
+     */
+    public int pendingLength() {
+        return length;
+    }
+    
+    /**
+     * Drop any partial line, e.g. after a reconnect
+     */
+    public void reset() {
+        length = 0;
+    }
+    
+    private void emit(LineListener listener) {
+        int start = 0;
+        int end = length;
+        while (start < end && pending[start] <= ' ') start++;
+        while (end > start && pending[end - 1] <= ' ') end--;
+        length = 0;
+        if (end > start) {
+            listener.onLine(new String(pending, start, end - start, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.myapplication.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * In-memory transport made of two bounded pipes. Whatever is written to one end
+ * can be read from its {@link #peer()} and the other way around.
+ */
+public class LoopbackTransport implements Transport {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    
+    private final Pipe incoming;
+    private final Pipe outgoing;
+    private LoopbackTransport peer;
+    
+    public LoopbackTransport() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+    
+    public LoopbackTransport(int bufferSize) {
+        this.incoming = new Pipe(bufferSize);
+        this.outgoing = new Pipe(bufferSize);
+    }
+    
+    private LoopbackTransport(LoopbackTransport other) {
+        this.incoming = other.outgoing;
+        this.outgoing = other.incoming;
+        this.peer = other;
+    }
+    
+    /**
+     * Get the other end of this loopback
+     */
+    public synchronized LoopbackTransport peer() {
+        if (peer == null) {
+            peer = new LoopbackTransport(this);
+        }
+        return peer;
+    }
+    
+    @Override
+    public InputStream getInputStream() {
+        return incoming.input;
+    }
+    
+    @Override
+    public OutputStream getOutputStream() {
+        return outgoing.output;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return !incoming.isClosed() && !outgoing.isClosed();
+    }
+    
+    /**
+     * Closing either end closes both directions, like a socket would
+     */
+    @Override
+    public void close() {
+        incoming.close();
+        outgoing.close();
+    }
+    
+    /**
+     * Bounded single-producer/single-consumer byte ring with blocking reads and writes
+     */
+    private static final class Pipe {
+        private final byte[] ring;
+        private int readPos;
+        private int size;
+        private boolean closed;
+        
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int n = read(one, 0, 1);
+                return n == -1 ? -1 : one[0] & 0xFF;
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return Pipe.this.read(b, off, len);
+            }
+            
+            @Override
+            public int available() {
+                synchronized (Pipe.this) {
+                    return size;
+                }
+            }
+            
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+        
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Pipe.this.write(b, off, len);
+            }
+            
+            @Override
+            public void close() {
+                Pipe.this.close();
+            }
+        };
+        
+        Pipe(int capacity) {
+            this.ring = new byte[capacity];
+        }
+        
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (size == 0) {
+                if (closed) return -1;
+                waitInterruptibly();
+            }
+            int count = Math.min(len, size);
+            int first = Math.min(count, ring.length - readPos);
+            System.arraycopy(ring, readPos, b, off, first);
+            System.arraycopy(ring, 0, b, off + first, count - first);
+            readPos = (readPos + count) % ring.length;
+            size -= count;
+            notifyAll();
+            return count;
+        }
+        
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                while (size == ring.length && !closed) {
+                    waitInterruptibly();
+                }
+                if (closed) throw new IOException("Pipe closed");
+                int writePos = (readPos + size) % ring.length;
+                int count = Math.min(len, ring.length - size);
+                int first = Math.min(count, ring.length - writePos);
+                System.arraycopy(b, off, ring, writePos, first);
+                System.arraycopy(b, off + first, ring, 0, count - first);
+                size += count;
+                off += count;
+                len -= count;
+                notifyAll();
+            }
+        }
+        
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+        
+        synchronized boolean isClosed() {
+            return closed;
+        }
+        
+        private void waitInterruptibly() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
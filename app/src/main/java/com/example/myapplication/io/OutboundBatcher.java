@@ -0,0 +1,92 @@
+package com.example.myapplication.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects outgoing messages from any thread and writes everything queued so far
+ * in a single write() + flush() on the writer thread. Each message is terminated
+ * with '\n' as the server expects.
+ */
+public class OutboundBatcher {
+    
+    private final OutputStream outputStream;
+    private List<String> queued = new ArrayList<>();
+    private byte[] buffer = new byte[512];
+    
+    public OutboundBatcher(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+    
+    /**
+     * Queue a message, safe to call from any thread
+     */
+    public synchronized void enqueue(String message) {
+        queued.add(message);
+    }
+    
+    public synchronized int queuedCount() {
+        return queued.size();
+    }
+    
+    /**
+     * Write all queued messages at once. Must only be called from one thread at a time.
+     *
+     * @return the messages that were written, in order
+     */
+    public List<String> flush() throws IOException {
+        List<String> batch;
+        synchronized (this) {
+            if (queued.isEmpty()) {
+                return Collections.emptyList();
+            }
+            batch = queued;
+            queued = new ArrayList<>();
+        }
+        
+        int length = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            length = encode(batch.get(i), length);
+        }
+        outputStream.write(buffer, 0, length);
+        outputStream.flush();
+        return batch;
+    }
+    
+    private int encode(String message, int position) {
+        int chars = message.length();
+        ensureCapacity(position + chars + 1);
+        for (int i = 0; i < chars; i++) {
+            char c = message.charAt(i);
+            if (c >= 0x80) {
+                // Non-ASCII text, let the charset encoder deal with it
+                return encodeUtf8(message, position);
+            }
+            buffer[position + i] = (byte) c;
+        }
+        position += chars;
+        buffer[position++] = '\n';
+        return position;
+    }
+    
+    private int encodeUtf8(String message, int position) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(position + bytes.length + 1);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        buffer[position++] = '\n';
+        return position;
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            byte[] grown = new byte[Math.max(capacity, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, buffer.length);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.myapplication.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Transport over a plain TCP socket, used for localhost servers
+ */
+public class SocketTransport implements Transport {
+    
+    private final Socket socket;
+    
+    public SocketTransport(Socket socket) {
+        this.socket = socket;
+    }
+    
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+    
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return socket.isConnected() && !socket.isClosed();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
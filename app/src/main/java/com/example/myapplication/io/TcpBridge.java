@@ -0,0 +1,258 @@
+package com.example.myapplication.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves the raw byte stream of a connection on a localhost TCP port so desktop
+ * tools can follow the car link. Any number of subscribers may connect; each
+ * gets every byte read from the moment it connected. Subscribers are read-only,
+ * anything they send is discarded.
+ *
+ * The connection's reader copies each read once into a direct buffer slab and
+ * queues a slice of it. The bridge thread hands every subscriber its own
+ * read-only view of that slice and writes it with non-blocking gathering
+ * writes, so the bytes go from the slab to the sockets without further copies
+ * and the reader never waits for a subscriber. A subscriber that falls more than
+ * {@link #MAX_BACKLOG_BYTES} behind is disconnected.
+ */
+public class TcpBridge implements ByteSink, Closeable {
+    
+    static final int SLAB_BYTES = 64 * 1024;
+    static final int MAX_BACKLOG_BYTES = 256 * 1024;
+    
+    private static final class Subscriber {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> backlog = new ArrayDeque<>();
+        long backlogBytes = 0;
+        
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+    
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<ByteBuffer> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    /** Only touched by the bridge thread */
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final ByteBuffer discard = ByteBuffer.allocate(256);
+    private final Object slabLock = new Object();
+    private ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_BYTES);
+    private volatile int subscriberCount = 0;
+    private volatile boolean running = true;
+    private boolean started = false;
+    
+    /**
+     * Listen on the loopback interface
+     *
+     * @param port TCP port, 0 for any free port
+     */
+    public TcpBridge(int port) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.socket().setReuseAddress(true);
+            server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            closeQuietly(server);
+            closeQuietly(selector);
+            throw e;
+        }
+        thread = new Thread(this::run, "tcp-bridge");
+        thread.setDaemon(true);
+    }
+    
+    public synchronized void start() {
+        started = true;
+        thread.start();
+    }
+    
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+    
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+    
+    /**
+     * Called by the connection's reader; returns without copying when nobody is
+     * subscribed
+     */
+    @Override
+    public void onBytes(byte[] data, int offset, int length) {
+        if (subscriberCount == 0 || length <= 0) return;
+        ByteBuffer chunk;
+        synchronized (slabLock) {
+            if (slab.remaining() < length) {
+                // Slices of the old slab stay valid until every subscriber wrote them
+                slab = ByteBuffer.allocateDirect(Math.max(SLAB_BYTES, length));
+            }
+            int start = slab.position();
+            slab.put(data, offset, length);
+            chunk = slab.duplicate();
+            chunk.position(start);
+            chunk.limit(start + length);
+        }
+        pending.offer(chunk.slice().asReadOnlyBuffer());
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+    
+    /**
+     * Disconnect every subscriber and stop listening
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (started) {
+            selector.wakeup();
+        } else {
+            closeAll();
+        }
+    }
+    
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                if (!running) break;
+                
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Subscriber subscriber = (Subscriber) key.attachment();
+                    if (key.isReadable()) {
+                        discardInput(subscriber);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(subscriber);
+                    }
+                }
+                
+                ByteBuffer chunk;
+                while ((chunk = pending.poll()) != null) {
+                    fanOut(chunk);
+                }
+                for (int i = subscribers.size() - 1; i >= 0; i--) {
+                    Subscriber subscriber = subscribers.get(i);
+                    if (!subscriber.backlog.isEmpty()) {
+                        write(subscriber);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Selector failed, nothing left to serve
+        } finally {
+            closeAll();
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Subscriber subscriber = new Subscriber(channel);
+        channel.register(selector, SelectionKey.OP_READ, subscriber);
+        subscribers.add(subscriber);
+        subscriberCount = subscribers.size();
+    }
+    
+    private void fanOut(ByteBuffer chunk) {
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            Subscriber subscriber = subscribers.get(i);
+            subscriber.backlog.addLast(chunk.duplicate());
+            subscriber.backlogBytes += chunk.remaining();
+            if (subscriber.backlogBytes > MAX_BACKLOG_BYTES) {
+                drop(subscriber);
+            }
+        }
+    }
+    
+    private void write(Subscriber subscriber) {
+        try {
+            ByteBuffer[] buffers = subscriber.backlog.toArray(new ByteBuffer[0]);
+            subscriber.backlogBytes -= subscriber.channel.write(buffers);
+            while (!subscriber.backlog.isEmpty() && !subscriber.backlog.peekFirst().hasRemaining()) {
+                subscriber.backlog.pollFirst();
+            }
+            SelectionKey key = subscriber.channel.keyFor(selector);
+            if (key != null && key.isValid()) {
+                // Only wait for the socket to drain while something is left over
+                key.interestOps(subscriber.backlog.isEmpty()
+                    ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            drop(subscriber);
+        }
+    }
+    
+    private void discardInput(Subscriber subscriber) {
+        try {
+            int read;
+            do {
+                discard.clear();
+                read = subscriber.channel.read(discard);
+            } while (read > 0);
+            if (read < 0) {
+                drop(subscriber);
+            }
+        } catch (IOException e) {
+            drop(subscriber);
+        }
+    }
+    
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriberCount = subscribers.size();
+        subscriber.backlog.clear();
+        closeQuietly(subscriber.channel);
+    }
+    
+    private void closeAll() {
+        for (Subscriber subscriber : subscribers) {
+            closeQuietly(subscriber.channel);
+        }
+        subscribers.clear();
+        subscriberCount = 0;
+        pending.clear();
+        closeQuietly(server);
+        closeQuietly(selector);
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.myapplication.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A bidirectional byte stream the connection service can talk over
+ * (an RFCOMM socket on the device, an in-memory pipe in tests and benchmarks)
+ */
+public interface Transport extends Closeable {
+    
+    InputStream getInputStream() throws IOException;
+    
+    OutputStream getOutputStream() throws IOException;
+    
+    boolean isOpen();
+}
@@ -0,0 +1,57 @@
+package com.example.myapplication.obd;
+
+/**
+ * Diagnostic trouble codes are carried as their raw 16-bit value:
+ * two bits for the system letter, then four BCD-like digits.
+ */
+public final class Dtc {
+    
+    public static final int MODE_STORED = 0x03;
+    public static final int MODE_PENDING = 0x07;
+    public static final int MODE_PERMANENT = 0x0A;
+    
+    private static final String SYSTEMS = "PCBU";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    
+    private Dtc() {
+    }
+    
+    /**
+     * Raw value 0x0133 becomes "P0133", 0xC100 becomes "U0100"
+     */
+    public static String format(int raw) {
+        char[] code = new char[5];
+        code[0] = SYSTEMS.charAt((raw >> 14) & 0x3);
+        code[1] = HEX[(raw >> 12) & 0x3];
+        code[2] = HEX[(raw >> 8) & 0xF];
+        code[3] = HEX[(raw >> 4) & 0xF];
+        code[4] = HEX[raw & 0xF];
+        return new String(code);
+    }
+    
+    /**
+     * Inverse of {@link #format}, -1 if the text is not a valid code
+     */
+    public static int parse(String code) {
+        if (code == null || code.length() != 5) return -1;
+        int system = SYSTEMS.indexOf(Character.toUpperCase(code.charAt(0)));
+        int first = Character.digit(code.charAt(1), 16);
+        if (system < 0 || first < 0 || first > 3) return -1;
+        int raw = (system << 14) | (first << 12);
+        for (int i = 2; i < 5; i++) {
+            int digit = Character.digit(code.charAt(i), 16);
+            if (digit < 0) return -1;
+            raw |= digit << (4 * (4 - i));
+        }
+        return raw;
+    }
+    
+    public static String modeName(int mode) {
+        switch (mode) {
+            case MODE_STORED: return "stored";
+            case MODE_PENDING: return "pending";
+            case MODE_PERMANENT: return "permanent";
+            default: return "mode " + mode;
+        }
+    }
+}
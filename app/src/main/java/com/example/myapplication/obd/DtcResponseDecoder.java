@@ -0,0 +1,132 @@
+package com.example.myapplication.obd;
+
+/**
+ * Streaming decoder for mode 03/07/0A replies. Lines are fed one at a time as they
+ * arrive and codes are emitted as soon as both of their bytes have been seen,
+ * so long lists spread over several lines or ISO-TP frames are never buffered whole.
+ *
+ * Handles the ELM327 formats:
+ * <ul>
+ *   <li>legacy protocols: "43 01 33 00 00 00 00", three codes per line, zero padded</li>
+ *   <li>CAN single frame: "43 02 01 33 02 44", a count byte after the service byte</li>
+ *   <li>CAN multi-frame: "00A", "0: 43 04 01 33 02 44", "1: 03 00 04 20 00 00"</li>
+ * </ul>
+ */
+public class DtcResponseDecoder {
+    
+    public interface DtcListener {
+        void onDtc(int raw);
+    }
+    
+    private final int[] bytes = new int[64];
+    private int responseService;
+    private int expected;
+    private int received;
+    private int pendingHigh;
+    private boolean complete;
+    
+    /**
+     * Prepare for the reply to a new request
+     */
+    public void reset(int mode) {
+        responseService = mode + 0x40;
+        expected = -1;
+        received = 0;
+        pendingHigh = -1;
+        complete = false;
+    }
+    
+    /**
+     * True once the reply is known to be over: all counted codes arrived or the ECU had no data
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * Feed one reply line
+     *
+     * @return true if the line belonged to the reply
+     */
+    public boolean feed(String line, DtcListener listener) {
+        if (line.startsWith("NO DATA")) {
+            complete = true;
+            return true;
+        }
+        
+        int frameIndex = -1;
+        int colon = line.indexOf(':');
+        if (colon > 0 && colon <= 2 && isHexDigits(line.substring(0, colon))) {
+            frameIndex = Integer.parseInt(line.substring(0, colon), 16);
+            line = line.substring(colon + 1);
+        } else if (line.length() <= 3 && isHexDigits(line)) {
+            // ISO-TP total length line, e.g. "00A"
+            return true;
+        }
+        
+        int count = PidParser.hexToBytes(line, bytes);
+        if (count <= 0) {
+            return false;
+        }
+        
+        int start = 0;
+        if (frameIndex <= 0) {
+            if (bytes[0] != responseService) {
+                return false;
+            }
+            start = 1;
+            // CAN replies carry a code count; legacy ones are always 3 codes (6 bytes)
+            if (frameIndex == 0 || (count - 1) % 2 == 1) {
+                expected = bytes[1];
+                start = 2;
+                if (expected == 0) {
+                    complete = true;
+                }
+            }
+        }
+        
+        for (int i = start; i < count; i++) {
+            if (pendingHigh < 0) {
+                pendingHigh = bytes[i];
+                continue;
+            }
+            int raw = (pendingHigh << 8) | bytes[i];
+            pendingHigh = -1;
+            if (expected >= 0) {
+                if (received < expected) {
+                    received++;
+                    listener.onDtc(raw);
+                    if (received == expected) {
+                        complete = true;
+                    }
+                }
+            } else if (raw != 0) {
+                listener.onDtc(raw);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Decode one reassembled CAN reply, e.g. 43 02 01 33 02 44 as one ECU sent it
+     *
+     * @return number of codes, -1 if the message isn't a reply to the mode
+     */
+    public static int decodeMessage(int mode, int[] data, int length, DtcListener listener) {
+        if (length < 2 || data[0] != mode + 0x40) {
+            return -1;
+        }
+        int count = Math.min(data[1], (length - 2) / 2);
+        for (int i = 0; i < count; i++) {
+            listener.onDtc((data[2 + 2 * i] << 8) | data[3 + 2 * i]);
+        }
+        return count;
+    }
+    
+    private static boolean isHexDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (PidParser.hexValue(s.charAt(i)) < 0) return false;
+        }
+        return !s.isEmpty();
+    }
+}
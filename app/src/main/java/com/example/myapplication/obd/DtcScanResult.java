@@ -0,0 +1,110 @@
+package com.example.myapplication.obd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Codes found by one scan, per mode, and how they differ from an earlier scan
+ */
+public class DtcScanResult {
+    
+    public static final int[] MODES = { Dtc.MODE_STORED, Dtc.MODE_PENDING, Dtc.MODE_PERMANENT };
+    
+    /**
+     * A code that appeared or disappeared between two scans
+     */
+    public static class Change {
+        public final int mode;
+        public final int code;
+        public final boolean added;
+        
+        Change(int mode, int code, boolean added) {
+            this.mode = mode;
+            this.code = code;
+            this.added = added;
+        }
+    }
+    
+    private final List<Set<Integer>> codes = new ArrayList<>();
+    private final long timestampMillis;
+    private boolean partial = false;
+    
+    public DtcScanResult(long timestampMillis) {
+        this.timestampMillis = timestampMillis;
+        for (int i = 0; i < MODES.length; i++) {
+            codes.add(new TreeSet<>());
+        }
+    }
+    
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+    
+    void add(int mode, int code) {
+        codes.get(indexOf(mode)).add(code);
+    }
+    
+    void markPartial() {
+        partial = true;
+    }
+    
+    /**
+     * True if the scan gave up before every request was answered, so codes that
+     * are missing may just not have been read
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+    
+    /**
+     * This scan's codes plus the earlier scan's, for what is known after a partial scan
+     */
+    DtcScanResult union(DtcScanResult earlier) {
+        DtcScanResult union = new DtcScanResult(timestampMillis);
+        for (int i = 0; i < MODES.length; i++) {
+            union.codes.get(i).addAll(codes.get(i));
+            if (earlier != null) union.codes.get(i).addAll(earlier.codes.get(i));
+        }
+        return union;
+    }
+    
+    public Set<Integer> codes(int mode) {
+        return Collections.unmodifiableSet(codes.get(indexOf(mode)));
+    }
+    
+    public int totalCount() {
+        int total = 0;
+        for (Set<Integer> set : codes) {
+            total += set.size();
+        }
+        return total;
+    }
+    
+    /**
+     * Changes since an earlier scan; against null every code counts as added
+     */
+    public List<Change> diff(DtcScanResult previous) {
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < MODES.length; i++) {
+            Set<Integer> now = codes.get(i);
+            Set<Integer> before = previous != null ? previous.codes.get(i) : Collections.emptySet();
+            for (int code : now) {
+                if (!before.contains(code)) changes.add(new Change(MODES[i], code, true));
+            }
+            for (int code : before) {
+                if (!now.contains(code)) changes.add(new Change(MODES[i], code, false));
+            }
+        }
+        return changes;
+    }
+    
+    private static int indexOf(int mode) {
+        for (int i = 0; i < MODES.length; i++) {
+            if (MODES[i] == mode) return i;
+        }
+        throw new IllegalArgumentException("Not a DTC mode: " + mode);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.myapplication.obd;
+
+import com.example.myapplication.io.LineFramer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads stored, pending and permanent trouble codes (modes 03, 07 and 0A) one
+ * request at a time and reports what changed since the previous scan.
+ *
+ * Replies are decoded line by line as they arrive. A reply is over when all the
+ * codes it announced have arrived, the ECU says NO DATA, or the line goes quiet.
+ * Modes the vehicle rejects are remembered and skipped on later scans, so repeat
+ * scans only cost the round trips that can return something.
+ *
+ * Once {@link #setEcuHeaders} knows of several ECUs on a CAN bus, a scan asks each
+ * of them through its own {@link EcuMultiplexer} channel instead, so every module
+ * reports its codes and a silent one only delays the others by one request. If the
+ * ECUs still haven't all been asked after a generous per-request budget, the scan
+ * gives up and its result is marked partial: new codes are reported, but codes
+ * that weren't read are not taken as cleared.
+ * Register the scanner with the connection as both a line listener and a message
+ * listener.
+ */
+public class DtcScanner implements LineFramer.LineListener, IsoTpReassembler.MessageListener {
+    
+    public interface CommandSender {
+        void sendMessage(String command);
+    }
+    
+    public interface ScanListener {
+        /** Called on the scanner thread */
+        void onScanComplete(DtcScanResult result, List<DtcScanResult.Change> changes);
+    }
+    
+    private static final long FIRST_LINE_TIMEOUT_MS = 3000;
+    private static final long QUIET_TIMEOUT_MS = 200;
+    private static final long ECU_REQUEST_BUDGET_MS = 2000;
+    
+    private final CommandSender sender;
+    private final LinkedBlockingQueue<String> replies = new LinkedBlockingQueue<>();
+    private final DtcResponseDecoder decoder = new DtcResponseDecoder();
+    private final boolean[] unsupported = new boolean[DtcScanResult.MODES.length];
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dtc-scanner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean awaitingReply = false;
+    private volatile int[] ecuHeaders = new int[0];
+    private volatile EcuMultiplexer multiplexer;
+    private long ecuRequestBudgetMillis = ECU_REQUEST_BUDGET_MS;
+    private DtcScanResult previous;
+    
+    public DtcScanner(CommandSender sender) {
+        this.sender = sender;
+    }
+    
+    /**
+     * Feed a received line; only kept while a request is outstanding
+     */
+    @Override
+    public void onLine(String line) {
+        EcuMultiplexer current = multiplexer;
+        if (current != null) {
+            current.onLine(line);
+        } else if (awaitingReply) {
+            replies.offer(line);
+        }
+    }
+    
+    @Override
+    public void onMessage(int header, int[] data, int length) {
+        EcuMultiplexer current = multiplexer;
+        if (current != null) {
+            current.onMessage(header, data, length);
+        }
+    }
+    
+    /**
+     * Response headers of the ECUs on the bus, e.g. from the vehicle profile. With
+     * fewer than two the scan reads one undivided reply per mode.
+     */
+    public void setEcuHeaders(int[] responseHeaders) {
+        ecuHeaders = responseHeaders.clone();
+    }
+    
+    /**
+     * Run a scan in the background. Scans requested while one is running queue up.
+     */
+    public void scan(ScanListener listener) {
+        scan(() -> { }, listener);
+    }
+    
+    /**
+     * Like {@link #scan(ScanListener)}, running prepare on the scanner thread first,
+     * e.g. to stop other requests to the adapter and wait for their replies
+     */
+    public void scan(Runnable prepare, ScanListener listener) {
+        executor.execute(() -> {
+            prepare.run();
+            DtcScanResult result = runScan();
+            List<DtcScanResult.Change> changes = result.diff(previous);
+            if (result.isPartial()) {
+                // Codes of requests that never ran aren't cleared, only report new ones
+                changes.removeIf(change -> !change.added);
+                previous = result.union(previous);
+            } else {
+                previous = result;
+            }
+            listener.onScanComplete(result, changes);
+        });
+    }
+    
+    /**
+     * Forget the previous scan and the unsupported modes, e.g. for a different vehicle
+     */
+    public void reset() {
+        executor.execute(() -> {
+            previous = null;
+            for (int i = 0; i < unsupported.length; i++) {
+                unsupported[i] = false;
+            }
+        });
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * How long a multi-ECU scan may take per request before it is cut short
+     */
+    void setEcuRequestBudgetMillis(long millis) {
+        ecuRequestBudgetMillis = millis;
+    }
+    
+    private DtcScanResult runScan() {
+        int[] headers = ecuHeaders;
+        if (headers.length > 1) {
+            return runEcuScan(headers);
+        }
+        DtcScanResult result = new DtcScanResult(System.currentTimeMillis());
+        for (int i = 0; i < DtcScanResult.MODES.length; i++) {
+            if (unsupported[i]) continue;
+            int mode = DtcScanResult.MODES[i];
+            boolean supported = request(mode, result);
+            if (!supported) {
+                unsupported[i] = true;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Ask every ECU for every mode, interleaved across the ECUs. Replies are
+     * handled on the multiplexer's scheduler thread only.
+     */
+    private DtcScanResult runEcuScan(int[] headers) {
+        DtcScanResult result = new DtcScanResult(System.currentTimeMillis());
+        EcuMultiplexer ecus = new EcuMultiplexer(sender::sendMessage);
+        // Guarded by result, a reply still being handled after a timeout is dropped
+        boolean[] closed = { false };
+        EcuMultiplexer.ReplyListener listener = (channel, command, data, length) -> {
+            int mode = Integer.parseInt(command, 16);
+            synchronized (result) {
+                if (closed[0]) return;
+                DtcResponseDecoder.decodeMessage(mode, data, length, code -> result.add(mode, code));
+            }
+        };
+        int requests = 0;
+        for (int header : headers) {
+            EcuMultiplexer.Channel channel = ecus.openChannel(String.format(Locale.US, "%X", header),
+                EcuMultiplexer.requestHeaderFor(header), header);
+            for (int i = 0; i < DtcScanResult.MODES.length; i++) {
+                if (unsupported[i]) continue;
+                channel.submit(String.format(Locale.US, "%02X", DtcScanResult.MODES[i]), listener);
+                requests++;
+            }
+        }
+        
+        CountDownLatch done = new CountDownLatch(1);
+        boolean finished = false;
+        multiplexer = ecus;
+        try {
+            ecus.start();
+            ecus.finish(done::countDown);
+            // One more budget for switching headers on and off
+            finished = done.await((requests + 1) * ecuRequestBudgetMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            multiplexer = null;
+            ecus.shutdown();
+        }
+        synchronized (result) {
+            closed[0] = true;
+        }
+        if (!finished) {
+            result.markPartial();
+            // The multiplexer didn't get to restore the adapter, do it blind
+            sender.sendMessage("ATH0");
+            sender.sendMessage(String.format(Locale.US, "ATSH%03X", EcuMultiplexer.FUNCTIONAL_HEADER));
+        }
+        return result;
+    }
+    
+    /**
+     * Send one mode request and decode its reply into the result
+     *
+     * @return false if the vehicle doesn't support the mode
+     */
+    private boolean request(int mode, DtcScanResult result) {
+        replies.clear();
+        decoder.reset(mode);
+        awaitingReply = true;
+        sender.sendMessage(String.format(Locale.US, "%02X", mode));
+        
+        boolean answered = false;
+        boolean rejected = false;
+        try {
+            long timeout = FIRST_LINE_TIMEOUT_MS;
+            while (!decoder.isComplete()) {
+                String line = replies.poll(timeout, TimeUnit.MILLISECONDS);
+                if (line == null) break;
+                if (line.equals("?") || line.startsWith("7F")) {
+                    rejected = true;
+                    break;
+                }
+                if (decoder.feed(line, code -> result.add(mode, code))) {
+                    answered = true;
+                    timeout = QUIET_TIMEOUT_MS;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            awaitingReply = false;
+        }
+        return answered || !rejected;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.myapplication.obd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only DTC description table laid out for direct use from a memory-mapped file.
+ *
+ * Format (big endian): "DTC1" magic, int entry count, then per entry a 16-bit raw code
+ * and an int offset into the string pool, sorted by code; the pool holds each
+ * description as a 16-bit length followed by UTF-8 bytes. Lookups binary search the
+ * entries in place, so nothing is parsed up front.
+ */
+public class DtcTable {
+    
+    static final int MAGIC = 0x44544331; // "DTC1"
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 6;
+    
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int poolStart;
+    
+    public DtcTable(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a DTC table");
+        }
+        this.count = this.buffer.getInt(4);
+        this.poolStart = HEADER_SIZE + count * ENTRY_SIZE;
+    }
+    
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Description of a raw code, or null if the table doesn't have it
+     */
+    public String describe(int raw) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_SIZE + mid * ENTRY_SIZE;
+            int code = buffer.getShort(entry) & 0xFFFF;
+            if (code < raw) {
+                low = mid + 1;
+            } else if (code > raw) {
+                high = mid - 1;
+            } else {
+                return readString(poolStart + buffer.getInt(entry + 2));
+            }
+        }
+        return null;
+    }
+    
+    private String readString(int position) {
+        int length = buffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
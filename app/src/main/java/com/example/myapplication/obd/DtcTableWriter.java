@@ -0,0 +1,76 @@
+package com.example.myapplication.obd;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the {@link DtcTable} format. The shipped asset is regenerated from the
+ * tab-separated source with:
+ * <pre>
+ * java DtcTableWriter app/dtc/dtc_descriptions.tsv app/src/main/assets/dtc_descriptions.bin
+ * </pre>
+ */
+public final class DtcTableWriter {
+    
+    private DtcTableWriter() {
+    }
+    
+    public static void write(Map<Integer, String> descriptions, OutputStream out) throws IOException {
+        TreeMap<Integer, String> sorted = new TreeMap<>(descriptions);
+        ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        DataOutputStream pool = new DataOutputStream(poolBytes);
+        
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(DtcTable.MAGIC);
+        data.writeInt(sorted.size());
+        for (Map.Entry<Integer, String> entry : sorted.entrySet()) {
+            byte[] text = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            data.writeShort(entry.getKey());
+            data.writeInt(pool.size());
+            pool.writeShort(text.length);
+            pool.write(text);
+        }
+        pool.flush();
+        poolBytes.writeTo(data);
+        data.flush();
+    }
+    
+    /**
+     * Parse "P0133&lt;TAB&gt;description" lines, skipping blanks and # comments
+     */
+    public static Map<Integer, String> readTsv(BufferedReader reader) throws IOException {
+        Map<Integer, String> descriptions = new TreeMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int tab = line.indexOf('\t');
+            int raw = tab > 0 ? Dtc.parse(line.substring(0, tab)) : -1;
+            if (raw < 0) {
+                throw new IOException("Bad line: " + line);
+            }
+            descriptions.put(raw, line.substring(tab + 1).trim());
+        }
+        return descriptions;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Map<Integer, String> descriptions;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+            descriptions = readTsv(reader);
+        }
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            write(descriptions, out);
+        }
+        System.out.println("Wrote " + descriptions.size() + " descriptions to " + args[1]);
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.myapplication.obd;
+
+import com.example.myapplication.io.LineFramer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits one adapter link into logical channels, one per ECU (engine,
+ * transmission, ABS...), each with its own request queue.
+ *
+ * The ELM327 only runs one request at a time, so a scheduler thread takes
+ * requests from the channels in round-robin order, switching the CAN header with
+ * ATSH only when the next request is for a different ECU. One slow or silent
+ * module therefore delays every other module by at most one request instead of
+ * holding the whole scan. {@link #broadcast} sends a single functional request
+ * that all ECUs answer at once, and each reply is routed to the channel whose
+ * response header it carries.
+ *
+ * Replies are taken from the {@link IsoTpReassembler} messages of the connection,
+ * so headers must be on (the multiplexer sends ATH1 when it starts). This only
+ * works on CAN protocols. Register it with the connection as both a message
+ * listener and a line listener, and send through the connection's sendMessage.
+ * {@link #finish} turns headers off again and goes back to the functional header
+ * once the queued requests are done, so line by line decoders on the same link
+ * see the adapter defaults.
+ */
+public class EcuMultiplexer implements IsoTpReassembler.MessageListener, LineFramer.LineListener {
+    
+    public static final int FUNCTIONAL_HEADER = 0x7DF;
+    
+    public interface CommandSender {
+        void sendMessage(String command);
+    }
+    
+    public interface ReplyListener {
+        /**
+         * Called on the scheduler thread once per answering ECU. Length is 0 if the
+         * ECU didn't answer. Data is only valid for the duration of the call.
+         */
+        void onReply(Channel channel, String command, int[] data, int length);
+    }
+    
+    private static final long REPLY_TIMEOUT_MS = 1000;
+    private static final long BROADCAST_QUIET_MS = 100;
+    private static final long COMMAND_TIMEOUT_MS = 500;
+    
+    /**
+     * A logical connection to one ECU
+     */
+    public final class Channel {
+        private final String name;
+        private final int requestHeader;
+        private final int responseHeader;
+        private final ArrayDeque<Request> queue = new ArrayDeque<>();
+        
+        private Channel(String name, int requestHeader, int responseHeader) {
+            this.name = name;
+            this.requestHeader = requestHeader;
+            this.responseHeader = responseHeader;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getRequestHeader() {
+            return requestHeader;
+        }
+        
+        public int getResponseHeader() {
+            return responseHeader;
+        }
+        
+        /**
+         * Queue a request for this ECU, e.g. "0105" or "03"
+         */
+        public void submit(String command, ReplyListener listener) {
+            enqueue(this, new Request(command, listener));
+        }
+        
+        /**
+         * Number of requests waiting to be sent
+         */
+        public int pendingCount() {
+            synchronized (EcuMultiplexer.this) {
+                return queue.size();
+            }
+        }
+    }
+    
+    private static final class Request {
+        final String command;
+        final ReplyListener listener;
+        
+        Request(String command, ReplyListener listener) {
+            this.command = command;
+            this.listener = listener;
+        }
+    }
+    
+    /** A reply handed from the listener thread to the scheduler thread */
+    private static final class Reply {
+        final int header;
+        final int[] data;
+        final String line;
+        
+        Reply(int header, int[] data, String line) {
+            this.header = header;
+            this.data = data;
+            this.line = line;
+        }
+    }
+    
+    private final CommandSender sender;
+    private final List<Channel> channels = new ArrayList<>();
+    private final LinkedBlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+    private final Channel broadcastChannel;
+    private final Thread scheduler;
+    private volatile boolean awaitingReply = false;
+    private int nextChannel = 0;
+    private int currentHeader = -1;
+    private int currentPriority = -1;
+    private boolean running = true;
+    private boolean finishing = false;
+    private Runnable onFinished;
+    
+    public EcuMultiplexer(CommandSender sender) {
+        this.sender = sender;
+        this.broadcastChannel = new Channel("broadcast", FUNCTIONAL_HEADER, IsoTpReassembler.NO_HEADER);
+        this.scheduler = new Thread(this::schedule, "ecu-scheduler");
+        scheduler.setDaemon(true);
+    }
+    
+    /**
+     * Open a channel with the standard OBD response header for the request header,
+     * e.g. 7E0 answers on 7E8, 18DA10F1 answers on 18DAF110
+     */
+    public Channel openChannel(String name, int requestHeader) {
+        int responseHeader;
+        if (requestHeader > 0x7FF) {
+            // 29-bit: swap target and source address bytes
+            int target = (requestHeader >> 8) & 0xFF;
+            int source = requestHeader & 0xFF;
+            responseHeader = (requestHeader & 0xFFFF0000) | (source << 8) | target;
+        } else {
+            responseHeader = requestHeader + 8;
+        }
+        return openChannel(name, requestHeader, responseHeader);
+    }
+    
+    /**
+     * The physical request header an ECU with this response header listens on,
+     * e.g. 7E8 is asked on 7E0, 18DAF110 on 18DA10F1
+     */
+    public static int requestHeaderFor(int responseHeader) {
+        if (responseHeader > 0x7FF) {
+            int target = (responseHeader >> 8) & 0xFF;
+            int source = responseHeader & 0xFF;
+            return (responseHeader & 0xFFFF0000) | (source << 8) | target;
+        }
+        return responseHeader - 8;
+    }
+    
+    public synchronized Channel openChannel(String name, int requestHeader, int responseHeader) {
+        Channel channel = new Channel(name, requestHeader, responseHeader);
+        channels.add(channel);
+        return channel;
+    }
+    
+    public synchronized List<Channel> getChannels() {
+        return new ArrayList<>(channels);
+    }
+    
+    /**
+     * Send one request to every ECU with the functional header. Each answering
+     * ECU is reported through the listener with its own channel, ECUs without
+     * a channel are reported on a shared "broadcast" channel.
+     */
+    public void broadcast(String command, ReplyListener listener) {
+        enqueue(broadcastChannel, new Request(command, listener));
+    }
+    
+    public void start() {
+        scheduler.start();
+    }
+    
+    /**
+     * Run what is queued, then restore headers off and the functional header and
+     * stop. Requests submitted after this are dropped.
+     *
+     * @param onFinished called on the scheduler thread once the adapter is restored
+     */
+    public synchronized void finish(Runnable onFinished) {
+        this.onFinished = onFinished;
+        finishing = true;
+        notifyAll();
+    }
+    
+    /**
+     * Stop the scheduler, dropping requests that haven't been sent
+     */
+    public synchronized void shutdown() {
+        running = false;
+        for (Channel channel : channels) {
+            channel.queue.clear();
+        }
+        broadcastChannel.queue.clear();
+        notifyAll();
+        scheduler.interrupt();
+    }
+    
+    @Override
+    public void onMessage(int header, int[] data, int length) {
+        if (awaitingReply) {
+            replies.offer(new Reply(header, Arrays.copyOf(data, length), null));
+        }
+    }
+    
+    @Override
+    public void onLine(String line) {
+        // Adapter status lines; data lines arrive through onMessage
+        if (awaitingReply && (line.equals("OK") || line.equals("?") || line.startsWith("NO DATA")
+            || line.startsWith("CAN ERROR") || line.startsWith("UNABLE"))) {
+            replies.offer(new Reply(IsoTpReassembler.NO_HEADER, null, line));
+        }
+    }
+    
+    private synchronized void enqueue(Channel channel, Request request) {
+        if (!running || finishing) return;
+        channel.queue.addLast(request);
+        notifyAll();
+    }
+    
+    /**
+     * Take the next request in round-robin order, broadcasts first
+     */
+    private synchronized Request take(Channel[] target) throws InterruptedException {
+        while (running) {
+            if (!broadcastChannel.queue.isEmpty()) {
+                target[0] = broadcastChannel;
+                return broadcastChannel.queue.pollFirst();
+            }
+            int count = channels.size();
+            for (int i = 0; i < count; i++) {
+                Channel channel = channels.get((nextChannel + i) % count);
+                if (!channel.queue.isEmpty()) {
+                    nextChannel = (nextChannel + i + 1) % count;
+                    target[0] = channel;
+                    return channel.queue.pollFirst();
+                }
+            }
+            if (finishing) return null;
+            wait();
+        }
+        return null;
+    }
+    
+    private synchronized Channel channelFor(int responseHeader) {
+        for (Channel channel : channels) {
+            if (channel.responseHeader == responseHeader) return channel;
+        }
+        return null;
+    }
+    
+    private void schedule() {
+        Channel[] target = new Channel[1];
+        try {
+            command("ATH1");
+            while (true) {
+                Request request = take(target);
+                if (request == null) break;
+                Channel channel = target[0];
+                if (currentHeader != channel.requestHeader) {
+                    selectHeader(channel.requestHeader);
+                }
+                if (channel == broadcastChannel) {
+                    runBroadcast(request);
+                } else {
+                    runRequest(channel, request);
+                }
+            }
+            Runnable finished;
+            synchronized (this) {
+                if (!running) return;
+                finished = onFinished;
+            }
+            command("ATH0");
+            if (currentHeader != -1 && currentHeader != FUNCTIONAL_HEADER) {
+                command(String.format(Locale.US, "ATSH%03X", FUNCTIONAL_HEADER));
+            }
+            if (finished != null) {
+                finished.run();
+            }
+        } catch (InterruptedException e) {
+            // Shut down
+        }
+    }
+    
+    /**
+     * Point requests at an ECU. A 29-bit header is set as its priority byte with ATCP
+     * and the remaining three bytes with ATSH, since ATSH only takes all four bytes
+     * from ELM327 v2.1 on and most clones report an older version.
+     */
+    private void selectHeader(int header) throws InterruptedException {
+        if (header > 0x7FF) {
+            int priority = header >>> 24;
+            if (priority != currentPriority) {
+                command(String.format(Locale.US, "ATCP%02X", priority));
+                currentPriority = priority;
+            }
+            command(String.format(Locale.US, "ATSH%06X", header & 0xFFFFFF));
+        } else {
+            command(String.format(Locale.US, "ATSH%03X", header));
+        }
+        currentHeader = header;
+    }
+    
+    /**
+     * Send an adapter command and wait for its status line
+     */
+    private void command(String command) throws InterruptedException {
+        replies.clear();
+        awaitingReply = true;
+        sender.sendMessage(command);
+        try {
+            long deadline = System.currentTimeMillis() + COMMAND_TIMEOUT_MS;
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                Reply reply = replies.poll(remaining, TimeUnit.MILLISECONDS);
+                if (reply == null || reply.line != null) break;
+            }
+        } finally {
+            awaitingReply = false;
+        }
+    }
+    
+    private void runRequest(Channel channel, Request request) throws InterruptedException {
+        replies.clear();
+        awaitingReply = true;
+        sender.sendMessage(request.command);
+        Reply answer = null;
+        try {
+            long deadline = System.currentTimeMillis() + REPLY_TIMEOUT_MS;
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                Reply reply = replies.poll(remaining, TimeUnit.MILLISECONDS);
+                if (reply == null || reply.line != null) break;
+                // Messages without a header can't be told apart, only take this ECU's
+                if (reply.header == channel.responseHeader) {
+                    answer = reply;
+                    break;
+                }
+            }
+        } finally {
+            awaitingReply = false;
+        }
+        if (answer != null) {
+            request.listener.onReply(channel, request.command, answer.data, answer.data.length);
+        } else {
+            request.listener.onReply(channel, request.command, new int[0], 0);
+        }
+    }
+    
+    private void runBroadcast(Request request) throws InterruptedException {
+        replies.clear();
+        awaitingReply = true;
+        sender.sendMessage(request.command);
+        try {
+            long timeout = REPLY_TIMEOUT_MS;
+            while (true) {
+                Reply reply = replies.poll(timeout, TimeUnit.MILLISECONDS);
+                if (reply == null || reply.line != null) break;
+                Channel channel = channelFor(reply.header);
+                request.listener.onReply(channel != null ? channel : broadcastChannel,
+                    request.command, reply.data, reply.data.length);
+                // Other ECUs answer right behind the first one
+                timeout = BROADCAST_QUIET_MS;
+            }
+        } finally {
+            awaitingReply = false;
+        }
+    }
+}
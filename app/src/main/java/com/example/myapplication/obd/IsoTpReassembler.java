@@ -0,0 +1,243 @@
+package com.example.myapplication.obd;
+
+/**
+ * Rebuilds complete diagnostic messages from the lines an ELM327 prints, so long
+ * replies (VIN, freeze frames, DTC lists) come out as one message per ECU.
+ *
+ * With headers on (ATH1) every line starts with the CAN id, 11-bit "7E8" or 29-bit
+ * "18 DA F1 10", followed by the ISO-TP PCI byte: single frames are complete,
+ * first frames announce the total length and consecutive frames are appended in
+ * sequence. Replies from several ECUs may interleave; each CAN id gets its own
+ * slot from a fixed pool of preallocated buffers. With headers off the ELM327
+ * prints the length line ("014") and numbered lines ("0: ...") itself, which are
+ * reassembled in a slot keyed by {@link #NO_HEADER}. Any other hex line is a
+ * complete single message.
+ *
+ * Sequences that stall for longer than the timeout are dropped, as are ones with a
+ * missing frame. Not thread safe, feed it from the listener thread only.
+ */
+public class IsoTpReassembler {
+    
+    public static final int NO_HEADER = -1;
+    public static final int MAX_MESSAGE_LENGTH = 4095;
+    public static final long DEFAULT_TIMEOUT_MS = 1000;
+    
+    public interface MessageListener {
+        /**
+         * A complete message; data is only valid for the duration of the call
+         */
+        void onMessage(int header, int[] data, int length);
+    }
+    
+    private final long timeoutMillis;
+    private final int[] slotHeader;
+    private final int[][] slotData;
+    private final int[] slotExpected;
+    private final int[] slotReceived;
+    private final int[] slotNextSequence;
+    private final long[] slotLastFrame;
+    private final boolean[] slotActive;
+    private final int[] frame = new int[64];
+    private int dropped = 0;
+    
+    public IsoTpReassembler() {
+        this(8, DEFAULT_TIMEOUT_MS);
+    }
+    
+    public IsoTpReassembler(int maxConcurrent, long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        slotHeader = new int[maxConcurrent];
+        slotData = new int[maxConcurrent][MAX_MESSAGE_LENGTH];
+        slotExpected = new int[maxConcurrent];
+        slotReceived = new int[maxConcurrent];
+        slotNextSequence = new int[maxConcurrent];
+        slotLastFrame = new long[maxConcurrent];
+        slotActive = new boolean[maxConcurrent];
+    }
+    
+    /**
+     * Sequences dropped so far because they timed out, lost a frame or had no free slot
+     */
+    public int droppedCount() {
+        return dropped;
+    }
+    
+    /**
+     * Number of sequences still waiting for frames
+     */
+    public int pendingCount() {
+        int pending = 0;
+        for (boolean active : slotActive) {
+            if (active) pending++;
+        }
+        return pending;
+    }
+    
+    /**
+     * Feed one line from the adapter
+     *
+     * @return false if the line isn't a hex diagnostic frame
+     */
+    public boolean feed(CharSequence line, long nowMillis, MessageListener listener) {
+        expireStale(nowMillis);
+        int length = line.length();
+        if (length == 0) return false;
+        
+        // Headers off, numbered continuation line "N: xx xx ..."
+        int colon = indexOf(line, ':');
+        if (colon > 0 && colon <= 2) {
+            int index = parseHex(line, 0, colon);
+            int count = PidParser.hexToBytes(line, colon + 1, length, frame);
+            if (index < 0 || count < 0) return false;
+            appendConsecutive(NO_HEADER, index, frame, 0, count, nowMillis, listener);
+            return true;
+        }
+        
+        // Headers off, total length line "014"
+        if (length == 3 && parseHex(line, 0, 3) >= 0) {
+            int total = parseHex(line, 0, 3);
+            if (total > 0) {
+                startSequence(NO_HEADER, total, frame, 0, 0, nowMillis, listener);
+            }
+            return true;
+        }
+        
+        int header = NO_HEADER;
+        int bodyStart = 0;
+        boolean spaced = indexOf(line, ' ') >= 0;
+        if (length > 4 && (spaced ? line.charAt(3) == ' ' : length % 2 == 1) && parseHex(line, 0, 3) >= 0) {
+            header = parseHex(line, 0, 3);
+            bodyStart = 3;
+        }
+        int count = PidParser.hexToBytes(line, bodyStart, length, frame);
+        if (count <= 0) return false;
+        
+        if (header == NO_HEADER && count > 5 && frame[0] == 0x18 && frame[1] == 0xDA) {
+            // 29-bit id, e.g. "18 DA F1 10"
+            header = (frame[0] << 24) | (frame[1] << 16) | (frame[2] << 8) | frame[3];
+            System.arraycopy(frame, 4, frame, 0, count - 4);
+            count -= 4;
+        }
+        
+        if (header == NO_HEADER) {
+            listener.onMessage(NO_HEADER, frame, count);
+            return true;
+        }
+        
+        int pci = frame[0] >> 4;
+        switch (pci) {
+            case 0: {
+                int messageLength = Math.min(frame[0] & 0x0F, count - 1);
+                System.arraycopy(frame, 1, frame, 0, messageLength);
+                listener.onMessage(header, frame, messageLength);
+                return true;
+            }
+            case 1: {
+                if (count < 2) return false;
+                int total = ((frame[0] & 0x0F) << 8) | frame[1];
+                startSequence(header, total, frame, 2, count - 2, nowMillis, listener);
+                return true;
+            }
+            case 2:
+                appendConsecutive(header, frame[0] & 0x0F, frame, 1, count - 1, nowMillis, listener);
+                return true;
+            default:
+                // Flow control frames carry no payload
+                return true;
+        }
+    }
+    
+    /**
+     * Drop sequences that have not seen a frame within the timeout
+     */
+    public int expireStale(long nowMillis) {
+        int expired = 0;
+        for (int slot = 0; slot < slotActive.length; slot++) {
+            if (slotActive[slot] && nowMillis - slotLastFrame[slot] > timeoutMillis) {
+                slotActive[slot] = false;
+                expired++;
+            }
+        }
+        dropped += expired;
+        return expired;
+    }
+    
+    private void startSequence(int header, int total, int[] data, int offset, int count,
+                               long nowMillis, MessageListener listener) {
+        int slot = findSlot(header);
+        if (slot >= 0) {
+            // A new first frame replaces whatever was in progress for this ECU
+            dropped++;
+        } else {
+            slot = freeSlot();
+            if (slot < 0) {
+                dropped++;
+                return;
+            }
+        }
+        slotActive[slot] = true;
+        slotHeader[slot] = header;
+        slotExpected[slot] = Math.min(total, MAX_MESSAGE_LENGTH);
+        slotReceived[slot] = 0;
+        // Headers-off numbering starts at 0 with the first data line, ISO-TP at 1
+        slotNextSequence[slot] = header == NO_HEADER ? 0 : 1;
+        slotLastFrame[slot] = nowMillis;
+        append(slot, data, offset, count, listener);
+    }
+    
+    private void appendConsecutive(int header, int sequence, int[] data, int offset, int count,
+                                   long nowMillis, MessageListener listener) {
+        int slot = findSlot(header);
+        if (slot < 0) return;
+        if (sequence != slotNextSequence[slot]) {
+            // Lost a frame, the message can't be completed
+            slotActive[slot] = false;
+            dropped++;
+            return;
+        }
+        slotNextSequence[slot] = (sequence + 1) & 0x0F;
+        slotLastFrame[slot] = nowMillis;
+        append(slot, data, offset, count, listener);
+    }
+    
+    private void append(int slot, int[] data, int offset, int count, MessageListener listener) {
+        int take = Math.min(count, slotExpected[slot] - slotReceived[slot]);
+        System.arraycopy(data, offset, slotData[slot], slotReceived[slot], take);
+        slotReceived[slot] += take;
+        if (slotReceived[slot] == slotExpected[slot]) {
+            slotActive[slot] = false;
+            listener.onMessage(slotHeader[slot], slotData[slot], slotExpected[slot]);
+        }
+    }
+    
+    private int findSlot(int header) {
+        for (int slot = 0; slot < slotActive.length; slot++) {
+            if (slotActive[slot] && slotHeader[slot] == header) return slot;
+        }
+        return -1;
+    }
+    
+    private int freeSlot() {
+        for (int slot = 0; slot < slotActive.length; slot++) {
+            if (!slotActive[slot]) return slot;
+        }
+        return -1;
+    }
+    
+    private static int indexOf(CharSequence s, char c) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+    
+    private static int parseHex(CharSequence s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int nibble = PidParser.hexValue(s.charAt(i));
+            if (nibble < 0) return -1;
+            value = (value << 4) | nibble;
+        }
+        return value;
+    }
+}
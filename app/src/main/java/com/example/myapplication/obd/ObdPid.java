@@ -0,0 +1,174 @@
+package com.example.myapplication.obd;
+
+import java.util.Locale;
+
+/**
+ * Mode 01 (current data) PIDs we know how to decode, following SAE J1979
+ */
+public final class ObdPid {
+    
+    public static final int PIDS_SUPPORTED_01_20 = 0x00;
+    public static final int ENGINE_LOAD = 0x04;
+    public static final int COOLANT_TEMP = 0x05;
+    public static final int SHORT_TERM_FUEL_TRIM_1 = 0x06;
+    public static final int LONG_TERM_FUEL_TRIM_1 = 0x07;
+    public static final int SHORT_TERM_FUEL_TRIM_2 = 0x08;
+    public static final int LONG_TERM_FUEL_TRIM_2 = 0x09;
+    public static final int FUEL_PRESSURE = 0x0A;
+    public static final int INTAKE_PRESSURE = 0x0B;
+    public static final int ENGINE_RPM = 0x0C;
+    public static final int VEHICLE_SPEED = 0x0D;
+    public static final int TIMING_ADVANCE = 0x0E;
+    public static final int INTAKE_AIR_TEMP = 0x0F;
+    public static final int MAF_RATE = 0x10;
+    public static final int THROTTLE_POSITION = 0x11;
+    public static final int RUN_TIME = 0x1F;
+    public static final int PIDS_SUPPORTED_21_40 = 0x20;
+    public static final int FUEL_LEVEL = 0x2F;
+    public static final int BAROMETRIC_PRESSURE = 0x33;
+    public static final int PIDS_SUPPORTED_41_60 = 0x40;
+    public static final int CONTROL_MODULE_VOLTAGE = 0x42;
+    public static final int AMBIENT_AIR_TEMP = 0x46;
+    public static final int OIL_TEMP = 0x5C;
+    public static final int FUEL_RATE = 0x5E;
+    
+    private ObdPid() {
+    }
+    
+    /**
+     * Number of data bytes following the PID in a response, or -1 if unknown
+     */
+    public static int dataLength(int pid) {
+        switch (pid) {
+            case PIDS_SUPPORTED_01_20:
+            case PIDS_SUPPORTED_21_40:
+            case PIDS_SUPPORTED_41_60:
+                return 4;
+            case ENGINE_RPM:
+            case MAF_RATE:
+            case RUN_TIME:
+            case CONTROL_MODULE_VOLTAGE:
+            case FUEL_RATE:
+                return 2;
+            case ENGINE_LOAD:
+            case COOLANT_TEMP:
+            case SHORT_TERM_FUEL_TRIM_1:
+            case LONG_TERM_FUEL_TRIM_1:
+            case SHORT_TERM_FUEL_TRIM_2:
+            case LONG_TERM_FUEL_TRIM_2:
+            case FUEL_PRESSURE:
+            case INTAKE_PRESSURE:
+            case VEHICLE_SPEED:
+            case TIMING_ADVANCE:
+            case INTAKE_AIR_TEMP:
+            case THROTTLE_POSITION:
+            case FUEL_LEVEL:
+            case BAROMETRIC_PRESSURE:
+            case AMBIENT_AIR_TEMP:
+            case OIL_TEMP:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+    
+    /**
+     * Convert raw data bytes to an engineering value, NaN if the PID is not a sensor value
+     */
+    public static double decode(int pid, int[] data, int offset) {
+        int a = data[offset];
+        switch (pid) {
+            case ENGINE_LOAD:
+            case THROTTLE_POSITION:
+            case FUEL_LEVEL:
+                return a * 100.0 / 255.0;
+            case COOLANT_TEMP:
+            case INTAKE_AIR_TEMP:
+            case AMBIENT_AIR_TEMP:
+            case OIL_TEMP:
+                return a - 40;
+            case SHORT_TERM_FUEL_TRIM_1:
+            case LONG_TERM_FUEL_TRIM_1:
+            case SHORT_TERM_FUEL_TRIM_2:
+            case LONG_TERM_FUEL_TRIM_2:
+                return (a - 128) * 100.0 / 128.0;
+            case FUEL_PRESSURE:
+                return a * 3;
+            case INTAKE_PRESSURE:
+            case VEHICLE_SPEED:
+            case BAROMETRIC_PRESSURE:
+                return a;
+            case TIMING_ADVANCE:
+                return a / 2.0 - 64.0;
+            case ENGINE_RPM:
+                return ((a << 8) | data[offset + 1]) / 4.0;
+            case MAF_RATE:
+                return ((a << 8) | data[offset + 1]) / 100.0;
+            case RUN_TIME:
+                return (a << 8) | data[offset + 1];
+            case CONTROL_MODULE_VOLTAGE:
+                return ((a << 8) | data[offset + 1]) / 1000.0;
+            case FUEL_RATE:
+                return ((a << 8) | data[offset + 1]) / 20.0;
+            default:
+                return Double.NaN;
+        }
+    }
+    
+    public static String name(int pid) {
+        switch (pid) {
+            case ENGINE_LOAD: return "Engine load";
+            case COOLANT_TEMP: return "Coolant temp";
+            case SHORT_TERM_FUEL_TRIM_1: return "STFT bank 1";
+            case LONG_TERM_FUEL_TRIM_1: return "LTFT bank 1";
+            case SHORT_TERM_FUEL_TRIM_2: return "STFT bank 2";
+            case LONG_TERM_FUEL_TRIM_2: return "LTFT bank 2";
+            case FUEL_PRESSURE: return "Fuel pressure";
+            case INTAKE_PRESSURE: return "Intake pressure";
+            case ENGINE_RPM: return "RPM";
+            case VEHICLE_SPEED: return "Speed";
+            case TIMING_ADVANCE: return "Timing advance";
+            case INTAKE_AIR_TEMP: return "Intake air temp";
+            case MAF_RATE: return "MAF";
+            case THROTTLE_POSITION: return "Throttle";
+            case RUN_TIME: return "Run time";
+            case FUEL_LEVEL: return "Fuel level";
+            case BAROMETRIC_PRESSURE: return "Baro pressure";
+            case CONTROL_MODULE_VOLTAGE: return "Battery";
+            case AMBIENT_AIR_TEMP: return "Ambient temp";
+            case OIL_TEMP: return "Oil temp";
+            case FUEL_RATE: return "Fuel rate";
+            default: return String.format(Locale.US, "PID %02X", pid);
+        }
+    }
+    
+    public static String unit(int pid) {
+        switch (pid) {
+            case ENGINE_LOAD:
+            case SHORT_TERM_FUEL_TRIM_1:
+            case LONG_TERM_FUEL_TRIM_1:
+            case SHORT_TERM_FUEL_TRIM_2:
+            case LONG_TERM_FUEL_TRIM_2:
+            case THROTTLE_POSITION:
+            case FUEL_LEVEL:
+                return "%";
+            case COOLANT_TEMP:
+            case INTAKE_AIR_TEMP:
+            case AMBIENT_AIR_TEMP:
+            case OIL_TEMP:
+                return "\u00B0C";
+            case FUEL_PRESSURE:
+            case INTAKE_PRESSURE:
+            case BAROMETRIC_PRESSURE:
+                return "kPa";
+            case ENGINE_RPM: return "rpm";
+            case VEHICLE_SPEED: return "km/h";
+            case TIMING_ADVANCE: return "\u00B0";
+            case MAF_RATE: return "g/s";
+            case RUN_TIME: return "s";
+            case CONTROL_MODULE_VOLTAGE: return "V";
+            case FUEL_RATE: return "L/h";
+            default: return "";
+        }
+    }
+}
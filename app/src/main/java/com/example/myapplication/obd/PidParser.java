@@ -0,0 +1,88 @@
+package com.example.myapplication.obd;
+
+/**
+ * Decodes mode 01 response lines such as "41 0C 1A F8" (spaces optional) into
+ * samples. A single line may carry several PIDs when they were requested together,
+ * e.g. "41 0C 1A F8 0D 32". Parsing works on the characters directly and reuses
+ * one byte buffer, so an instance must only be used from one thread.
+ */
+public class PidParser {
+    
+    public static final int MODE_01_RESPONSE = 0x41;
+    
+    private final int[] bytes = new int[64];
+    
+    /**
+     * Parse one response line
+     *
+     * @return number of samples delivered to the sink, 0 if the line is not a mode 01 reply
+     */
+    public int parse(CharSequence line, long timestampMillis, SampleSink sink) {
+        int count = hexToBytes(line, bytes);
+        if (count < 3 || bytes[0] != MODE_01_RESPONSE) {
+            return 0;
+        }
+        return parsePayload(bytes, 1, count - 1, timestampMillis, sink);
+    }
+    
+    /**
+     * Decode PID/data groups that follow the 0x41 service byte
+     */
+    public static int parsePayload(int[] data, int offset, int count, long timestampMillis, SampleSink sink) {
+        int samples = 0;
+        int end = offset + count;
+        int i = offset;
+        while (i < end) {
+            int pid = data[i];
+            int length = ObdPid.dataLength(pid);
+            if (length < 0 || i + 1 + length > end) {
+                break;
+            }
+            double value = ObdPid.decode(pid, data, i + 1);
+            if (!Double.isNaN(value)) {
+                sink.onSample(pid, timestampMillis, value);
+                samples++;
+            }
+            i += 1 + length;
+        }
+        return samples;
+    }
+    
+    /**
+     * Convert hex text to bytes, skipping whitespace
+     *
+     * @return number of bytes written, or -1 if the text is not hex
+     */
+    public static int hexToBytes(CharSequence text, int[] out) {
+        return hexToBytes(text, 0, text.length(), out);
+    }
+    
+    /**
+     * Same as {@link #hexToBytes(CharSequence, int[])} for part of the text
+     */
+    public static int hexToBytes(CharSequence text, int start, int end, int[] out) {
+        int count = 0;
+        int high = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ' ') continue;
+            int nibble = hexValue(c);
+            if (nibble < 0) return -1;
+            if (high < 0) {
+                high = nibble;
+            } else {
+                if (count == out.length) return -1;
+                out[count++] = (high << 4) | nibble;
+                high = -1;
+            }
+        }
+        return high < 0 ? count : -1;
+    }
+    
+    public static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.myapplication.obd;
+
+import com.example.myapplication.io.LineFramer;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Polls a set of mode 01 PIDs over one connection, several PIDs per request.
+ *
+ * Every PID has its own interval. Normally all of them are polled at
+ * {@link #BASE_INTERVAL_MS}. In power saving mode the interval of a PID doubles
+ * each time it has stayed within {@link #STABLE_FRACTION} for
+ * {@link #STABLE_SAMPLES} samples in a row, up to {@link #MAX_INTERVAL_MS}, and
+ * drops back to the base interval as soon as it moves. While the engine is off
+ * every PID goes straight to its longest interval. Critical PIDs (the ones
+ * alert rules watch) are never polled less often than every
+ * {@link #CRITICAL_MAX_INTERVAL_MS}.
+ *
+ * On CAN several due PIDs go into one request (see {@link #setMultiPidRequests}),
+ * and PIDs that are due within {@link #BATCH_WINDOW_MS} of each other are sent
+ * together, so the radio wakes up once for the lot instead of once per PID.
+ * Older protocols get one PID per request, since their ECUs may leave PIDs out
+ * of a combined reply.
+ *
+ * A request is over once every PID in it has been answered, the adapter reports
+ * an error, or no further ECU has answered for {@link #REPLY_QUIET_MS}, so a PID
+ * only a second ECU supports isn't taken as unanswered.
+ *
+ * The poller starts paused. Register it with the connection as a sample sink,
+ * a message listener and a line listener, and send through the connection's
+ * sendMessage. PIDs the vehicle never answers are dropped after a few requests.
+ */
+public class PidPoller implements SampleSink, IsoTpReassembler.MessageListener, LineFramer.LineListener {
+    
+    public interface CommandSender {
+        void sendMessage(String command);
+    }
+    
+    /** Most PIDs one mode 01 request may carry on CAN */
+    public static final int MAX_PIDS_PER_REQUEST = 6;
+    
+    static final long BASE_INTERVAL_MS = 250;
+    static final long MAX_INTERVAL_MS = 8000;
+    static final long CRITICAL_MAX_INTERVAL_MS = 1000;
+    static final long BATCH_WINDOW_MS = 400;
+    static final int STABLE_SAMPLES = 4;
+    static final double STABLE_FRACTION = 0.01;
+    static final long REPLY_QUIET_MS = 100;
+    
+    private static final long REPLY_TIMEOUT_MS = 1000;
+    private static final int MAX_MISSES = 3;
+    
+    private final CommandSender sender;
+    private final Thread poller;
+    private final boolean[] polled = new boolean[256];
+    private final boolean[] critical = new boolean[256];
+    private final boolean[] answered = new boolean[256];
+    private final long[] interval = new long[256];
+    private final long[] nextDue = new long[256];
+    private final double[] last = new double[256];
+    private final int[] stableCount = new int[256];
+    private final int[] misses = new int[256];
+    private int[] pids = new int[0];
+    private boolean powerSaving = false;
+    private boolean engineOff = false;
+    private boolean paused = true;
+    private boolean running = true;
+    private int maxPidsPerRequest = 1;
+    private boolean awaitingReply = false;
+    private boolean replyEnded = false;
+    private long lastReplyMillis = 0;
+    private long requestCount = 0;
+    
+    public PidPoller(CommandSender sender) {
+        this.sender = sender;
+        this.poller = new Thread(this::poll, "pid-poller");
+        poller.setDaemon(true);
+    }
+    
+    /**
+     * Replace the polled PIDs, all start at the base interval
+     */
+    public synchronized void setPids(int... newPids) {
+        Arrays.fill(polled, false);
+        pids = new int[newPids.length];
+        for (int i = 0; i < newPids.length; i++) {
+            int pid = newPids[i] & 0xFF;
+            pids[i] = pid;
+            polled[pid] = true;
+            resetPid(pid);
+        }
+        notifyAll();
+    }
+    
+    /**
+     * PIDs that must keep a short interval so their alerts stay timely
+     */
+    public synchronized void setCriticalPids(int... criticalPids) {
+        Arrays.fill(critical, false);
+        for (int pid : criticalPids) {
+            critical[pid & 0xFF] = true;
+            interval[pid & 0xFF] = Math.min(interval[pid & 0xFF], maxInterval(pid & 0xFF));
+        }
+    }
+    
+    /**
+     * Whether a request may carry up to {@link #MAX_PIDS_PER_REQUEST} PIDs; only
+     * turn this on for CAN protocols. Off by default.
+     */
+    public synchronized void setMultiPidRequests(boolean enabled) {
+        maxPidsPerRequest = enabled ? MAX_PIDS_PER_REQUEST : 1;
+    }
+    
+    public synchronized void setPowerSaving(boolean enabled) {
+        if (powerSaving == enabled) return;
+        powerSaving = enabled;
+        for (int pid : pids) {
+            stableCount[pid] = 0;
+            interval[pid] = enabled && engineOff ? maxInterval(pid) : BASE_INTERVAL_MS;
+        }
+        notifyAll();
+    }
+    
+    public synchronized boolean isPowerSaving() {
+        return powerSaving;
+    }
+    
+    /**
+     * Current poll interval of a PID, 0 if it isn't polled
+     */
+    public synchronized long getInterval(int pid) {
+        return polled[pid] ? interval[pid] : 0;
+    }
+    
+    /**
+     * The PIDs still being polled, without the ones the vehicle never answered
+     */
+    public synchronized int[] getActivePids() {
+        int[] active = new int[pids.length];
+        int count = 0;
+        for (int pid : pids) {
+            if (polled[pid]) active[count++] = pid;
+        }
+        return Arrays.copyOf(active, count);
+    }
+    
+    /**
+     * Number of requests sent so far
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+    
+    public void start() {
+        poller.start();
+    }
+    
+    /**
+     * Stop sending, e.g. while another component needs the link. Waits for the reply
+     * to a request already sent, at most {@link #REPLY_TIMEOUT_MS}, so the next
+     * command doesn't go out while it is still arriving. Blocks, so don't call it on
+     * the main thread or the thread that delivers replies.
+     */
+    public synchronized void pause() {
+        paused = true;
+        long deadline = System.currentTimeMillis() + REPLY_TIMEOUT_MS;
+        try {
+            while (awaitingReply) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Stop sending without waiting for an outstanding reply, e.g. once the link is
+     * gone and no reply can come
+     */
+    public synchronized void pauseImmediately() {
+        paused = true;
+    }
+    
+    /**
+     * Continue polling, every PID is due right away
+     */
+    public synchronized void resume() {
+        paused = false;
+        for (int pid : pids) {
+            nextDue[pid] = 0;
+        }
+        notifyAll();
+    }
+    
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+        poller.interrupt();
+    }
+    
+    @Override
+    public synchronized void onSample(int pid, long timestampMillis, double value) {
+        if (!polled[pid]) return;
+        if (pid == ObdPid.ENGINE_RPM) {
+            updateEngineState(value <= 0);
+        }
+        double previous = last[pid];
+        last[pid] = value;
+        if (!powerSaving) return;
+        
+        if (!Double.isNaN(previous) && Math.abs(value - previous) <= Math.abs(previous) * STABLE_FRACTION) {
+            if (++stableCount[pid] >= STABLE_SAMPLES) {
+                stableCount[pid] = 0;
+                interval[pid] = Math.min(interval[pid] * 2, maxInterval(pid));
+            }
+        } else {
+            stableCount[pid] = 0;
+            if (!engineOff && interval[pid] > BASE_INTERVAL_MS) {
+                // Moving again, catch up right away
+                interval[pid] = BASE_INTERVAL_MS;
+                nextDue[pid] = Math.min(nextDue[pid], timestampMillis + BASE_INTERVAL_MS);
+                notifyAll();
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void onMessage(int header, int[] data, int length) {
+        if (!awaitingReply || length < 2 || data[0] != PidParser.MODE_01_RESPONSE) return;
+        // Note which PIDs came back; samples are decoded separately by the connection
+        int i = 1;
+        while (i < length) {
+            int pid = data[i];
+            int dataLength = ObdPid.dataLength(pid);
+            if (dataLength < 0 || i + 1 + dataLength > length) break;
+            answered[pid] = true;
+            i += 1 + dataLength;
+        }
+        // More ECUs may answer the same request right behind this one
+        lastReplyMillis = System.currentTimeMillis();
+        notifyAll();
+    }
+    
+    @Override
+    public synchronized void onLine(String line) {
+        // Data arrives through onMessage, this only ends requests nothing answered
+        if (awaitingReply && (line.startsWith("NO DATA") || line.equals("?")
+            || line.startsWith("CAN ERROR") || line.startsWith("UNABLE"))) {
+            replyEnded = true;
+            notifyAll();
+        }
+    }
+    
+    private void updateEngineState(boolean off) {
+        if (off == engineOff) return;
+        engineOff = off;
+        if (!powerSaving) return;
+        for (int pid : pids) {
+            stableCount[pid] = 0;
+            interval[pid] = off ? maxInterval(pid) : BASE_INTERVAL_MS;
+            if (!off) nextDue[pid] = 0;
+        }
+        notifyAll();
+    }
+    
+    private void resetPid(int pid) {
+        interval[pid] = BASE_INTERVAL_MS;
+        nextDue[pid] = 0;
+        last[pid] = Double.NaN;
+        stableCount[pid] = 0;
+        misses[pid] = 0;
+    }
+    
+    private long maxInterval(int pid) {
+        return critical[pid] ? CRITICAL_MAX_INTERVAL_MS : MAX_INTERVAL_MS;
+    }
+    
+    /**
+     * Wait until at least one PID is due and pick as many as one request may
+     * carry, most overdue first
+     *
+     * @return number of PIDs in batch, -1 once shut down
+     */
+    private synchronized int nextBatch(int[] batch) throws InterruptedException {
+        while (running) {
+            if (paused || pids.length == 0) {
+                wait();
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            long window = powerSaving ? BATCH_WINDOW_MS : 0;
+            int count = 0;
+            long earliest = Long.MAX_VALUE;
+            int limit = Math.min(batch.length, maxPidsPerRequest);
+            while (count < limit) {
+                int best = -1;
+                for (int pid : pids) {
+                    if (!polled[pid] || contains(batch, count, pid)) continue;
+                    if (best < 0 || nextDue[pid] < nextDue[best]) best = pid;
+                }
+                if (best < 0) break;
+                earliest = Math.min(earliest, nextDue[best]);
+                if (nextDue[best] > now + window) break;
+                batch[count++] = best;
+            }
+            if (count > 0) return count;
+            if (earliest == Long.MAX_VALUE) {
+                // Nothing left the vehicle answers
+                wait();
+            } else {
+                wait(Math.max(1, earliest - window - now));
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+    
+    private boolean allAnswered(int[] batch, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!answered[batch[i]]) return false;
+        }
+        return true;
+    }
+    
+    private void poll() {
+        int[] batch = new int[MAX_PIDS_PER_REQUEST];
+        StringBuilder command = new StringBuilder(2 + 2 * MAX_PIDS_PER_REQUEST);
+        try {
+            while (true) {
+                int count = nextBatch(batch);
+                if (count < 0) return;
+                command.setLength(0);
+                command.append("01");
+                synchronized (this) {
+                    for (int i = 0; i < count; i++) {
+                        answered[batch[i]] = false;
+                        command.append(String.format(Locale.US, "%02X", batch[i]));
+                    }
+                    replyEnded = false;
+                    lastReplyMillis = 0;
+                    awaitingReply = true;
+                    requestCount++;
+                }
+                sender.sendMessage(command.toString());
+                awaitReply(batch, count);
+            }
+        } catch (InterruptedException e) {
+            // Shut down
+        }
+    }
+    
+    private synchronized void awaitReply(int[] batch, int count) throws InterruptedException {
+        try {
+            long deadline = System.currentTimeMillis() + REPLY_TIMEOUT_MS;
+            while (running && !replyEnded && !allAnswered(batch, count)) {
+                long until = lastReplyMillis > 0 ? Math.min(deadline, lastReplyMillis + REPLY_QUIET_MS) : deadline;
+                long remaining = until - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                wait(remaining);
+            }
+        } finally {
+            awaitingReply = false;
+            notifyAll();
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            int pid = batch[i];
+            if (answered[pid] || paused) {
+                misses[pid] = 0;
+            } else if (++misses[pid] >= MAX_MISSES) {
+                polled[pid] = false;
+            }
+            nextDue[pid] = now + interval[pid];
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.myapplication.obd;
+
+/**
+ * Receives decoded sensor values. Signals are identified by their mode 01 PID
+ * number so that the stream stays primitive all the way down.
+ */
+public interface SampleSink {
+    void onSample(int pid, long timestampMillis, double value);
+}
@@ -0,0 +1,247 @@
+package com.example.myapplication.obd;
+
+import com.example.myapplication.io.LineFramer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out what a freshly connected car supports before polling starts.
+ *
+ * A probe reads the adapter firmware (ATI), asks for the VIN (mode 09 PID 02)
+ * and reads the protocol the adapter settled on (ATDPN). If the cache has a
+ * profile for the VIN with the same firmware and protocol it is used as is.
+ * Otherwise the supported PID bitmaps are requested (01 00, 01 20... for as long
+ * as the previous bitmap says the next one exists) and the result is cached for
+ * the next visit. On CAN the bitmaps are read with headers on to note which ECUs
+ * answer; headers are turned off again afterwards, since the line by line
+ * decoders on the link expect them off.
+ *
+ * Register the probe with the connection as both a message listener and a line
+ * listener, and send through the connection's sendMessage.
+ */
+public class VehicleProbe implements IsoTpReassembler.MessageListener, LineFramer.LineListener {
+    
+    public interface CommandSender {
+        void sendMessage(String command);
+    }
+    
+    /**
+     * Persistent profile store; called on the probe thread
+     */
+    public interface ProfileCache {
+        /** @return the cached profile, or null */
+        VehicleProfile load(String vin);
+        
+        void save(VehicleProfile profile);
+    }
+    
+    public interface ProbeListener {
+        /**
+         * Called on the probe thread. The VIN of the profile is empty if the car
+         * didn't report one, such profiles are not cached.
+         */
+        void onProbeComplete(VehicleProfile profile, boolean fromCache);
+    }
+    
+    public static final int SERVICE_09_RESPONSE = 0x49;
+    
+    private static final long FIRST_REPLY_TIMEOUT_MS = 5000;
+    private static final long QUIET_TIMEOUT_MS = 200;
+    private static final long COMMAND_TIMEOUT_MS = 1000;
+    
+    /** A line or a reassembled message handed from the listener thread */
+    private static final class Reply {
+        final int header;
+        final int[] data;
+        final String line;
+        
+        Reply(int header, int[] data, String line) {
+            this.header = header;
+            this.data = data;
+            this.line = line;
+        }
+    }
+    
+    private final CommandSender sender;
+    private final ProfileCache cache;
+    private final LinkedBlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vehicle-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean awaitingReply = false;
+    
+    public VehicleProbe(CommandSender sender, ProfileCache cache) {
+        this.sender = sender;
+        this.cache = cache;
+    }
+    
+    @Override
+    public void onMessage(int header, int[] data, int length) {
+        if (awaitingReply) {
+            replies.offer(new Reply(header, Arrays.copyOf(data, length), null));
+        }
+    }
+    
+    @Override
+    public void onLine(String line) {
+        if (awaitingReply) {
+            replies.offer(new Reply(IsoTpReassembler.NO_HEADER, null, line));
+        }
+    }
+    
+    /**
+     * Probe the car in the background
+     *
+     * @param wantedPids PIDs the caller would like to poll; the profile keeps the supported ones
+     */
+    public void probe(int[] wantedPids, ProbeListener listener) {
+        executor.execute(() -> {
+            try {
+                runProbe(wantedPids, listener);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private void runProbe(int[] wantedPids, ProbeListener listener) throws InterruptedException {
+        String firmware = ask("ATI");
+        String vin = readVin();
+        String protocol = ask("ATDPN");
+        String fingerprint = VehicleProfile.fingerprint(firmware, protocol);
+        
+        boolean validVin = VehicleProfile.isValidVin(vin);
+        if (validVin) {
+            VehicleProfile cached = cache.load(vin);
+            if (cached != null && cached.matches(fingerprint)) {
+                listener.onProbeComplete(cached, true);
+                return;
+            }
+        }
+        
+        int[] bitmaps = new int[VehicleProfile.BITMAP_WORDS];
+        List<Integer> headers = new ArrayList<>();
+        // Other protocols put their headers in a form the reassembler doesn't parse
+        boolean withHeaders = VehicleProfile.isCanProtocol(protocol);
+        if (withHeaders) {
+            ask("ATH1");
+        }
+        try {
+            for (int word = 0; word < VehicleProfile.BITMAP_WORDS; word++) {
+                int base = word * 0x20;
+                for (Reply reply : request(String.format(Locale.US, "01%02X", base))) {
+                    int[] data = reply.data;
+                    if (data.length < 6 || data[0] != PidParser.MODE_01_RESPONSE || data[1] != base) continue;
+                    bitmaps[word] |= (data[2] << 24) | (data[3] << 16) | (data[4] << 8) | data[5];
+                    if (reply.header != IsoTpReassembler.NO_HEADER && !headers.contains(reply.header)) {
+                        headers.add(reply.header);
+                    }
+                }
+                // The lowest bit says whether the next range exists
+                if ((bitmaps[word] & 1) == 0) break;
+            }
+        } finally {
+            if (withHeaders) {
+                ask("ATH0");
+            }
+        }
+        
+        int[] ecuHeaders = new int[headers.size()];
+        for (int i = 0; i < ecuHeaders.length; i++) {
+            ecuHeaders[i] = headers.get(i);
+        }
+        VehicleProfile profile = new VehicleProfile(validVin ? vin : "", fingerprint, bitmaps, ecuHeaders, new int[0]);
+        profile = profile.withPollPids(profile.filterSupported(wantedPids));
+        if (validVin) {
+            cache.save(profile);
+        }
+        listener.onProbeComplete(profile, false);
+    }
+    
+    /**
+     * The VIN from mode 09 PID 02, or an empty string. CAN cars send it in one
+     * multi-frame message, older ones spread it over several numbered messages;
+     * either way it's the last 17 printable characters.
+     */
+    private String readVin() throws InterruptedException {
+        StringBuilder text = new StringBuilder();
+        for (Reply reply : request("0902")) {
+            int[] data = reply.data;
+            if (data.length < 3 || data[0] != SERVICE_09_RESPONSE || data[1] != 0x02) continue;
+            for (int i = 2; i < data.length; i++) {
+                if (data[i] > 0x20 && data[i] < 0x7F) {
+                    text.append((char) data[i]);
+                }
+            }
+        }
+        return text.length() >= 17 ? text.substring(text.length() - 17) : "";
+    }
+    
+    /**
+     * Send an adapter command and return its first text line, skipping the echo
+     */
+    private String ask(String command) throws InterruptedException {
+        replies.clear();
+        awaitingReply = true;
+        sender.sendMessage(command);
+        try {
+            long deadline = System.currentTimeMillis() + COMMAND_TIMEOUT_MS;
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                Reply reply = replies.poll(remaining, TimeUnit.MILLISECONDS);
+                if (reply == null) break;
+                if (reply.line == null || reply.line.isEmpty() || reply.line.equals(command)) continue;
+                return reply.line.trim();
+            }
+        } finally {
+            awaitingReply = false;
+        }
+        return "";
+    }
+    
+    /**
+     * Send an OBD request and collect the messages of every answering ECU until
+     * the line goes quiet or the adapter reports an error
+     */
+    private List<Reply> request(String command) throws InterruptedException {
+        List<Reply> messages = new ArrayList<>();
+        replies.clear();
+        awaitingReply = true;
+        sender.sendMessage(command);
+        try {
+            long timeout = FIRST_REPLY_TIMEOUT_MS;
+            while (true) {
+                Reply reply = replies.poll(timeout, TimeUnit.MILLISECONDS);
+                if (reply == null) break;
+                if (reply.line != null) {
+                    String line = reply.line;
+                    if (line.startsWith("NO DATA") || line.equals("?") || line.startsWith("UNABLE")
+                        || line.startsWith("CAN ERROR") || line.startsWith("STOPPED")) {
+                        break;
+                    }
+                    // Data lines come back as messages
+                    continue;
+                }
+                messages.add(reply);
+                // Other ECUs answer right behind the first one
+                timeout = QUIET_TIMEOUT_MS;
+            }
+        } finally {
+            awaitingReply = false;
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.myapplication.obd;
+
+import java.util.Arrays;
+
+/**
+ * What a session learns about a car before it can stream: which mode 01 PIDs
+ * it supports, which ECUs answer and which PIDs are worth polling. Profiles are
+ * cached by VIN so a returning car skips the discovery round trips.
+ *
+ * The fingerprint records the adapter firmware and the bus protocol the profile
+ * was discovered with; a profile whose fingerprint doesn't match the current
+ * link is stale and discovered again.
+ */
+public final class VehicleProfile {
+    
+    /** Supported PID bitmaps for 01-20, 21-40, ... E1-FF, as mode 01 PID 00/20/.../E0 return them */
+    public static final int BITMAP_WORDS = 8;
+    
+    public final String vin;
+    public final String fingerprint;
+    private final int[] supported;
+    private final int[] ecuHeaders;
+    private final int[] pollPids;
+    
+    public VehicleProfile(String vin, String fingerprint, int[] supported, int[] ecuHeaders, int[] pollPids) {
+        if (supported.length != BITMAP_WORDS) {
+            throw new IllegalArgumentException("Expected " + BITMAP_WORDS + " bitmap words: " + supported.length);
+        }
+        this.vin = vin;
+        this.fingerprint = fingerprint;
+        this.supported = supported.clone();
+        this.ecuHeaders = ecuHeaders.clone();
+        this.pollPids = pollPids.clone();
+    }
+    
+    /**
+     * Fingerprint of the link, e.g. "ELM327 v1.5/6" for an ELM327 v1.5 on 11-bit CAN
+     */
+    public static String fingerprint(String firmware, String protocol) {
+        return firmware + "/" + protocolNumber(protocol);
+    }
+    
+    /**
+     * Whether an ATDPN protocol is one of the CAN ones (6 to C), where replies
+     * carry the ECU's header as an ID the reassembler understands
+     */
+    public static boolean isCanProtocol(String protocol) {
+        String number = protocolNumber(protocol);
+        return number.length() == 1 && "6789ABC".indexOf(number.charAt(0)) >= 0;
+    }
+    
+    private static String protocolNumber(String protocol) {
+        // "A6" only means the protocol was found automatically
+        return protocol.length() > 1 && protocol.startsWith("A") ? protocol.substring(1) : protocol;
+    }
+    
+    /**
+     * A VIN is 17 characters of digits and capital letters other than I, O and Q
+     */
+    public static boolean isValidVin(String vin) {
+        if (vin == null || vin.length() != 17) return false;
+        for (int i = 0; i < vin.length(); i++) {
+            char c = vin.charAt(i);
+            boolean valid = (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z' && c != 'I' && c != 'O' && c != 'Q');
+            if (!valid) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Whether the profile was discovered on a CAN protocol
+     */
+    public boolean isCan() {
+        return isCanProtocol(fingerprint.substring(fingerprint.lastIndexOf('/') + 1));
+    }
+    
+    public boolean matches(String currentFingerprint) {
+        return fingerprint.equals(currentFingerprint);
+    }
+    
+    /**
+     * Whether the car answers this mode 01 PID; PID 00 is always supported
+     */
+    public boolean isSupported(int pid) {
+        if (pid == 0) return true;
+        int word = (pid - 1) / 32;
+        int bit = 31 - (pid - 1) % 32;
+        return word < BITMAP_WORDS && (supported[word] & (1 << bit)) != 0;
+    }
+    
+    /**
+     * The wanted PIDs the car supports, in the given order
+     */
+    public int[] filterSupported(int[] pids) {
+        int[] result = new int[pids.length];
+        int count = 0;
+        for (int pid : pids) {
+            if (isSupported(pid)) result[count++] = pid;
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    public int[] getSupportedBitmaps() {
+        return supported.clone();
+    }
+    
+    public int[] getEcuHeaders() {
+        return ecuHeaders.clone();
+    }
+    
+    public int[] getPollPids() {
+        return pollPids.clone();
+    }
+    
+    /**
+     * The same profile with the PIDs a session ended up polling
+     */
+    public VehicleProfile withPollPids(int[] pids) {
+        return new VehicleProfile(vin, fingerprint, supported, ecuHeaders, pids);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.myapplication.rules;
+
+import com.example.myapplication.obd.ObdPid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Definition of one anomaly check on a single signal. Rules are plain values;
+ * {@link RuleEngine} compiles a list of them into its evaluation plan.
+ */
+public final class AnomalyRule {
+    
+    public static final int THRESHOLD = 0;
+    public static final int RATE_OF_CHANGE = 1;
+    public static final int WINDOW_MEAN = 2;
+    public static final int DEVIATION = 3;
+    
+    public final String name;
+    public final int type;
+    public final int pid;
+    /** Lower limit, or the rate/deviation limit for single limit rules */
+    public final double low;
+    public final double high;
+    /** Number of samples in the sliding window, 0 for rules without one */
+    public final int window;
+    /** Shortest time a rate is measured over, 0 for other rules */
+    public final long spanMillis;
+    
+    private AnomalyRule(String name, int type, int pid, double low, double high, int window, long spanMillis) {
+        this.name = name;
+        this.type = type;
+        this.pid = pid;
+        this.low = low;
+        this.high = high;
+        this.window = window;
+        this.spanMillis = spanMillis;
+    }
+    
+    /**
+     * Fires when a sample is outside [low, high]
+     */
+    public static AnomalyRule threshold(String name, int pid, double low, double high) {
+        return new AnomalyRule(name, THRESHOLD, pid, low, high, 0, 0);
+    }
+    
+    /**
+     * Fires when the signal changes faster than maxPerSecond, in either direction.
+     * The rate is measured between samples at least spanMillis apart, so one
+     * step of a coarsely quantized signal (e.g. coolant in whole degrees) between
+     * two close samples doesn't count as a jump.
+     */
+    public static AnomalyRule rateOfChange(String name, int pid, double maxPerSecond, long spanMillis) {
+        if (spanMillis <= 0) {
+            throw new IllegalArgumentException("Span must be positive: " + spanMillis);
+        }
+        return new AnomalyRule(name, RATE_OF_CHANGE, pid, maxPerSecond, Double.NaN, 0, spanMillis);
+    }
+    
+    /**
+     * Fires when the mean of the last window samples is outside [low, high]
+     */
+    public static AnomalyRule windowMean(String name, int pid, int window, double low, double high) {
+        checkWindow(window);
+        return new AnomalyRule(name, WINDOW_MEAN, pid, low, high, window, 0);
+    }
+    
+    /**
+     * Fires when a sample is more than sigmas standard deviations away from the
+     * mean of the window samples before it
+     */
+    public static AnomalyRule deviation(String name, int pid, int window, double sigmas) {
+        checkWindow(window);
+        return new AnomalyRule(name, DEVIATION, pid, sigmas, Double.NaN, window, 0);
+    }
+    
+    private static void checkWindow(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("Window needs at least 2 samples: " + window);
+        }
+    }
+    
+    /**
+     * Checks that are worth running on any car
+     */
+    public static List<AnomalyRule> defaults() {
+        List<AnomalyRule> rules = new ArrayList<>();
+        rules.add(threshold("Engine overheating", ObdPid.COOLANT_TEMP, -40, 110));
+        rules.add(threshold("Oil overheating", ObdPid.OIL_TEMP, -40, 130));
+        rules.add(threshold("Over-rev", ObdPid.ENGINE_RPM, 0, 6500));
+        rules.add(windowMean("Charging voltage out of range", ObdPid.CONTROL_MODULE_VOLTAGE, 20, 12.0, 15.0));
+        rules.add(rateOfChange("Coolant temperature jump", ObdPid.COOLANT_TEMP, 5, 2000));
+        rules.add(windowMean("Fuel trim out of range", ObdPid.LONG_TERM_FUEL_TRIM_1, 20, -25, 25));
+        rules.add(deviation("Erratic MAF reading", ObdPid.MAF_RATE, 50, 6));
+        return rules;
+    }
+}
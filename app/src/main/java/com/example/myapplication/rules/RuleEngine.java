@@ -0,0 +1,232 @@
+package com.example.myapplication.rules;
+
+import com.example.myapplication.obd.SampleSink;
+
+import java.util.List;
+
+/**
+ * Evaluates anomaly rules on the decoded sample stream as it arrives.
+ *
+ * The rules are compiled once into flat arrays: a per-PID list of rule indices,
+ * the rule parameters, and one shared array holding every rule's sliding window.
+ * Windowed rules keep running sums, so each sample costs a constant amount of
+ * work per rule on its signal and no allocation. The listener is only called
+ * when a rule changes state, not for every sample that keeps violating it.
+ *
+ * Feed it from one thread only, normally the listener thread of the connection.
+ */
+public class RuleEngine implements SampleSink {
+    
+    public interface AlertListener {
+        /** A rule started firing; called on the thread feeding samples */
+        void onAlert(AnomalyRule rule, double value, long timestampMillis);
+        
+        /** The signal of a firing rule is back in range */
+        void onAlertCleared(AnomalyRule rule, double value, long timestampMillis);
+    }
+    
+    private static final int PID_COUNT = 256;
+    private static final int[] NO_RULES = new int[0];
+    
+    private final AnomalyRule[] rules;
+    private final AlertListener listener;
+    private final int[][] rulesByPid = new int[PID_COUNT][];
+    private final int[] type;
+    private final double[] low;
+    private final double[] high;
+    private final int[] windowOffset;
+    private final int[] windowSize;
+    private final double[] windowValues;
+    private final int[] windowHead;
+    private final int[] windowCount;
+    private final double[] sum;
+    private final double[] sumSquares;
+    private final double[] lastValue;
+    private final long[] lastTime;
+    private final long[] span;
+    private final boolean[] hasLast;
+    private final boolean[] firing;
+    private volatile boolean resetRequested = false;
+    
+    public RuleEngine(List<AnomalyRule> ruleList, AlertListener listener) {
+        this.listener = listener;
+        int count = ruleList.size();
+        rules = ruleList.toArray(new AnomalyRule[0]);
+        type = new int[count];
+        low = new double[count];
+        high = new double[count];
+        windowOffset = new int[count];
+        windowSize = new int[count];
+        windowHead = new int[count];
+        windowCount = new int[count];
+        sum = new double[count];
+        sumSquares = new double[count];
+        lastValue = new double[count];
+        lastTime = new long[count];
+        span = new long[count];
+        hasLast = new boolean[count];
+        firing = new boolean[count];
+        
+        int[] perPid = new int[PID_COUNT];
+        int windowTotal = 0;
+        for (int i = 0; i < count; i++) {
+            AnomalyRule rule = rules[i];
+            if (rule.pid < 0 || rule.pid >= PID_COUNT) {
+                throw new IllegalArgumentException("PID out of range in rule " + rule.name);
+            }
+            type[i] = rule.type;
+            low[i] = rule.low;
+            high[i] = rule.high;
+            windowOffset[i] = windowTotal;
+            windowSize[i] = rule.window;
+            windowTotal += rule.window;
+            span[i] = rule.spanMillis;
+            perPid[rule.pid]++;
+        }
+        windowValues = new double[windowTotal];
+        
+        for (int pid = 0; pid < PID_COUNT; pid++) {
+            rulesByPid[pid] = perPid[pid] == 0 ? NO_RULES : new int[perPid[pid]];
+            perPid[pid] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int pid = rules[i].pid;
+            rulesByPid[pid][perPid[pid]++] = i;
+        }
+    }
+    
+    public int ruleCount() {
+        return rules.length;
+    }
+    
+    /**
+     * Forget all windows and firing rules, e.g. for a new connection. Takes effect
+     * with the next sample, so it is safe to call from any thread.
+     */
+    public void reset() {
+        resetRequested = true;
+    }
+    
+    @Override
+    public void onSample(int pid, long timestampMillis, double value) {
+        if (resetRequested) {
+            resetRequested = false;
+            clearState();
+        }
+        if (pid < 0 || pid >= PID_COUNT) return;
+        int[] plan = rulesByPid[pid];
+        for (int i = 0; i < plan.length; i++) {
+            int r = plan[i];
+            boolean violated;
+            switch (type[r]) {
+                case AnomalyRule.THRESHOLD:
+                    violated = value < low[r] || value > high[r];
+                    break;
+                case AnomalyRule.RATE_OF_CHANGE:
+                    violated = rateExceeded(r, timestampMillis, value);
+                    break;
+                case AnomalyRule.WINDOW_MEAN:
+                    push(r, value);
+                    if (windowCount[r] < windowSize[r]) continue;
+                    double mean = sum[r] / windowSize[r];
+                    violated = mean < low[r] || mean > high[r];
+                    break;
+                case AnomalyRule.DEVIATION:
+                    // Compare against the window before this sample, then add it
+                    violated = windowCount[r] == windowSize[r] && deviates(r, value);
+                    push(r, value);
+                    break;
+                default:
+                    continue;
+            }
+            if (violated != firing[r]) {
+                firing[r] = violated;
+                if (violated) {
+                    listener.onAlert(rules[r], value, timestampMillis);
+                } else {
+                    listener.onAlertCleared(rules[r], value, timestampMillis);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compare against the last reference sample once at least the rule's span has
+     * passed, which then becomes the new reference
+     */
+    private boolean rateExceeded(int r, long timestampMillis, double value) {
+        boolean exceeded = false;
+        if (hasLast[r]) {
+            long elapsed = timestampMillis - lastTime[r];
+            if (elapsed < span[r]) {
+                // Too close for a meaningful slope, keep the current state
+                return firing[r];
+            }
+            exceeded = Math.abs(value - lastValue[r]) * 1000.0 / elapsed > low[r];
+        }
+        lastValue[r] = value;
+        lastTime[r] = timestampMillis;
+        hasLast[r] = true;
+        return exceeded;
+    }
+    
+    private boolean deviates(int r, double value) {
+        int n = windowSize[r];
+        double mean = sum[r] / n;
+        double variance = sumSquares[r] / n - mean * mean;
+        if (variance <= 0) return false;
+        return Math.abs(value - mean) > low[r] * Math.sqrt(variance);
+    }
+    
+    /**
+     * Add a value to the rule's window, dropping the oldest once it is full
+     */
+    private void push(int r, double value) {
+        int size = windowSize[r];
+        int slot = windowOffset[r] + windowHead[r];
+        if (windowCount[r] == size) {
+            double old = windowValues[slot];
+            sum[r] -= old;
+            sumSquares[r] -= old * old;
+        } else {
+            windowCount[r]++;
+        }
+        windowValues[slot] = value;
+        sum[r] += value;
+        sumSquares[r] += value * value;
+        windowHead[r]++;
+        if (windowHead[r] == size) {
+            windowHead[r] = 0;
+            if (windowCount[r] == size) {
+                resum(r);
+            }
+        }
+    }
+    
+    /**
+     * Recompute the running sums once per lap so rounding errors can't pile up
+     */
+    private void resum(int r) {
+        double s = 0;
+        double s2 = 0;
+        int offset = windowOffset[r];
+        for (int i = 0; i < windowSize[r]; i++) {
+            double v = windowValues[offset + i];
+            s += v;
+            s2 += v * v;
+        }
+        sum[r] = s;
+        sumSquares[r] = s2;
+    }
+    
+    private void clearState() {
+        for (int r = 0; r < rules.length; r++) {
+            windowHead[r] = 0;
+            windowCount[r] = 0;
+            sum[r] = 0;
+            sumSquares[r] = 0;
+            hasLast[r] = false;
+            firing[r] = false;
+        }
+    }
+}
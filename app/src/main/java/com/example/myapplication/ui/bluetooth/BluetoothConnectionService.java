@@ -12,11 +12,27 @@ import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 
+import com.example.myapplication.io.ByteSink;
+import com.example.myapplication.io.LineFramer;
+import com.example.myapplication.io.OutboundBatcher;
+import com.example.myapplication.io.Transport;
+import com.example.myapplication.obd.IsoTpReassembler;
+import com.example.myapplication.obd.PidParser;
+import com.example.myapplication.obd.SampleSink;
+import com.example.myapplication.util.MessageLogBuffer;
+import com.example.myapplication.util.MetricsRegistry;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service class to handle Bluetooth RFCOMM connections to the Python server
@@ -27,14 +43,52 @@ public class BluetoothConnectionService {
     // SPP UUID - same as used in Python server
     private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
     
+    /** Connection methods, in the order they are normally tried */
+    public static final int METHOD_CHANNEL_4 = 0;
+    public static final int METHOD_SPP = 1;
+    public static final int METHOD_INSECURE = 2;
+    
+    /** Received lines held back for a slow UI, see {@link #setUiDeliveryIntervalMillis} */
+    private static final int MAX_HELD_MESSAGES = MessageLogBuffer.DEFAULT_MAX_LINES;
+    
     private BluetoothSocket socket;
+    private Transport transport;
     private InputStream inputStream;
-    private OutputStream outputStream;
+    private OutboundBatcher outboundBatcher;
     private Thread connectionThread;
-    private boolean isConnected = false;
+    private volatile boolean isConnected = false;
+    private volatile int connectMethod = METHOD_CHANNEL_4;
     private Context context;
     private ConnectionListener listener;
-    private Handler mainHandler;
+    private final Executor callbackExecutor;
+    private final ExecutorService readerExecutor;
+    private final ExecutorService writerExecutor;
+    private final boolean ownsExecutors;
+    private final MetricsRegistry metrics;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object writeLock = new Object();
+    private volatile MetricsRegistry.Counter bytesIn;
+    private volatile MetricsRegistry.Counter linesIn;
+    private volatile MetricsRegistry.Counter messagesOut;
+    private volatile MetricsRegistry.Counter bytesOut;
+    private volatile MetricsRegistry.Counter radioWakeups;
+    private volatile MetricsRegistry.Counter samplesIn;
+    /** Wakeups, bytes and samples of the adapter's counters when this connection started */
+    private volatile long[] energyBaseline;
+    private volatile long uiDeliveryIntervalMillis = 0;
+    private final List<String> heldMessages = new ArrayList<>();
+    private long lastDeliveryMillis = 0;
+    private volatile SampleSink[] sampleSinks = new SampleSink[0];
+    private volatile LineFramer.LineListener[] lineListeners = new LineFramer.LineListener[0];
+    private volatile IsoTpReassembler.MessageListener[] messageListeners = new IsoTpReassembler.MessageListener[0];
+    private volatile ByteSink[] byteSinks = new ByteSink[0];
+    private final SampleSink sampleDispatcher = (pid, timestampMillis, value) -> {
+        samplesIn.increment();
+        SampleSink[] sinks = sampleSinks;
+        for (int i = 0; i < sinks.length; i++) {
+            sinks[i].onSample(pid, timestampMillis, value);
+        }
+    };
     
     public interface ConnectionListener {
         void onConnected(BluetoothDevice device);
@@ -45,8 +99,60 @@ public class BluetoothConnectionService {
     }
     
     public BluetoothConnectionService(Context context) {
+        this(context, new Handler(Looper.getMainLooper())::post);
+    }
+    
+    /**
+     * @param callbackExecutor where listener callbacks run, the main thread by default
+     */
+    public BluetoothConnectionService(Context context, Executor callbackExecutor) {
+        this(context, callbackExecutor, newReaderExecutor(), newWriterExecutor(1), new MetricsRegistry(), true);
+    }
+    
+    /**
+     * Share threads and metrics with other connections, see {@link ConnectionManager}.
+     * The executors are left running by {@link #destroy()}.
+     *
+     * @param readerExecutor runs the blocking read loop, needs a thread per open connection
+     * @param writerExecutor runs the batched writes
+     */
+    public BluetoothConnectionService(Context context, Executor callbackExecutor,
+                                      ExecutorService readerExecutor, ExecutorService writerExecutor,
+                                      MetricsRegistry metrics) {
+        this(context, callbackExecutor, readerExecutor, writerExecutor, metrics, false);
+    }
+    
+    private BluetoothConnectionService(Context context, Executor callbackExecutor,
+                                       ExecutorService readerExecutor, ExecutorService writerExecutor,
+                                       MetricsRegistry metrics, boolean ownsExecutors) {
         this.context = context;
-        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.callbackExecutor = callbackExecutor;
+        this.readerExecutor = readerExecutor;
+        this.writerExecutor = writerExecutor;
+        this.metrics = metrics;
+        this.ownsExecutors = ownsExecutors;
+    }
+    
+    static ExecutorService newReaderExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bt-reader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    static ExecutorService newWriterExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bt-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
     
     public void setConnectionListener(ConnectionListener listener) {
@@ -54,9 +160,84 @@ public class BluetoothConnectionService {
     }
     
     /**
-     * Connect to a Bluetooth device using RFCOMM channel 4 (for Python server)
+     * Receive decoded OBD samples. Sinks are called on the listener thread, not the
+     * main thread, so they must not block.
+     */
+    public synchronized void addSampleSink(SampleSink sink) {
+        SampleSink[] sinks = Arrays.copyOf(sampleSinks, sampleSinks.length + 1);
+        sinks[sinks.length - 1] = sink;
+        sampleSinks = sinks;
+    }
+    
+    public synchronized void removeSampleSink(SampleSink sink) {
+        List<SampleSink> sinks = new ArrayList<>(Arrays.asList(sampleSinks));
+        sinks.remove(sink);
+        sampleSinks = sinks.toArray(new SampleSink[0]);
+    }
+    
+    /**
+     * Receive every complete line on the listener thread, ahead of the main thread
+     * delivery to {@link ConnectionListener#onMessageReceived}
+     */
+    public synchronized void addLineListener(LineFramer.LineListener lineListener) {
+        LineFramer.LineListener[] listeners = Arrays.copyOf(lineListeners, lineListeners.length + 1);
+        listeners[listeners.length - 1] = lineListener;
+        lineListeners = listeners;
+    }
+    
+    public synchronized void removeLineListener(LineFramer.LineListener lineListener) {
+        List<LineFramer.LineListener> listeners = new ArrayList<>(Arrays.asList(lineListeners));
+        listeners.remove(lineListener);
+        lineListeners = listeners.toArray(new LineFramer.LineListener[0]);
+    }
+    
+    /**
+     * Receive complete diagnostic messages, reassembled across lines and keyed by
+     * ECU header, on the listener thread
+     */
+    public synchronized void addMessageListener(IsoTpReassembler.MessageListener messageListener) {
+        IsoTpReassembler.MessageListener[] listeners = Arrays.copyOf(messageListeners, messageListeners.length + 1);
+        listeners[listeners.length - 1] = messageListener;
+        messageListeners = listeners;
+    }
+    
+    public synchronized void removeMessageListener(IsoTpReassembler.MessageListener messageListener) {
+        List<IsoTpReassembler.MessageListener> listeners = new ArrayList<>(Arrays.asList(messageListeners));
+        listeners.remove(messageListener);
+        messageListeners = listeners.toArray(new IsoTpReassembler.MessageListener[0]);
+    }
+    
+    /**
+     * Receive the raw bytes of every read on the listener thread, after the
+     * connection's own consumers have had them, e.g. for a local TCP bridge
+     */
+    public synchronized void addByteSink(ByteSink sink) {
+        ByteSink[] sinks = Arrays.copyOf(byteSinks, byteSinks.length + 1);
+        sinks[sinks.length - 1] = sink;
+        byteSinks = sinks;
+    }
+    
+    public synchronized void removeByteSink(ByteSink sink) {
+        List<ByteSink> sinks = new ArrayList<>(Arrays.asList(byteSinks));
+        sinks.remove(sink);
+        byteSinks = sinks.toArray(new ByteSink[0]);
+    }
+    
+    /**
+     * Connect to a Bluetooth device using RFCOMM channel 4 (for Python server),
+     * falling back to the SPP UUID and an insecure socket
      */
     public void connect(BluetoothDevice device) {
+        connect(device, METHOD_CHANNEL_4);
+    }
+    
+    /**
+     * Connect trying firstMethod before the others, e.g. the method that worked
+     * for this device last time (see {@link #getConnectMethod()}). Every failed
+     * method costs a socket timeout and a one second pause, so a good guess is
+     * the difference between a quick reconnect and a slow one.
+     */
+    public void connect(BluetoothDevice device, int firstMethod) {
         if (isConnected) {
             disconnect();
         }
@@ -78,63 +259,23 @@ public class BluetoothConnectionService {
                     adapter.cancelDiscovery();
                 }
                 
-                // Try multiple connection methods
+                // Try each connection method, the one that worked last time first
                 boolean connected = false;
-                
-                // Method 1: Try to connect to RFCOMM channel 4 directly using reflection (for Python server)
-                try {
-                    Log.d(TAG, "Trying to connect to RFCOMM channel 4 using reflection...");
-                    socket = (BluetoothSocket) device.getClass()
-                        .getMethod("createRfcommSocket", int.class)
-                        .invoke(device, 4);
-                    socket.connect();
-                    connected = true;
-                    Log.d(TAG, "Connected using RFCOMM channel 4");
-                } catch (Exception e) {
-                    Log.w(TAG, "Failed to connect to channel 4: " + e.getMessage());
-                    if (socket != null) {
-                        try { socket.close(); } catch (Exception ignored) {}
-                        socket = null;
+                int[] order = connectOrder(firstMethod);
+                for (int i = 0; i < order.length && !connected; i++) {
+                    if (i > 0) {
+                        // Small delay before trying next method
+                        try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
                     }
-                }
-                
-                // Small delay before trying next method
-                if (!connected) {
-                    try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
-                }
-                
-                // Method 2: Fallback to SPP UUID if channel 4 failed
-                if (!connected) {
                     try {
-                        Log.d(TAG, "Trying to connect using SPP UUID...");
-                        socket = device.createRfcommSocketToServiceRecord(SPP_UUID);
+                        Log.d(TAG, "Trying to connect using " + methodName(order[i]) + "...");
+                        socket = openSocket(device, order[i]);
                         socket.connect();
                         connected = true;
-                        Log.d(TAG, "Connected using SPP UUID");
+                        connectMethod = order[i];
+                        Log.d(TAG, "Connected using " + methodName(order[i]));
                     } catch (Exception e) {
-                        Log.w(TAG, "Failed to connect using SPP UUID: " + e.getMessage());
-                        if (socket != null) {
-                            try { socket.close(); } catch (Exception ignored) {}
-                            socket = null;
-                        }
-                    }
-                }
-                
-                // Small delay before trying next method
-                if (!connected) {
-                    try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
-                }
-                
-                // Method 3: Try creating an insecure RFCOMM socket
-                if (!connected) {
-                    try {
-                        Log.d(TAG, "Trying insecure RFCOMM socket...");
-                        socket = device.createInsecureRfcommSocketToServiceRecord(SPP_UUID);
-                        socket.connect();
-                        connected = true;
-                        Log.d(TAG, "Connected using insecure RFCOMM socket");
-                    } catch (Exception e) {
-                        Log.w(TAG, "Failed to connect using insecure socket: " + e.getMessage());
+                        Log.w(TAG, "Failed to connect using " + methodName(order[i]) + ": " + e.getMessage());
                         if (socket != null) {
                             try { socket.close(); } catch (Exception ignored) {}
                             socket = null;
@@ -146,22 +287,8 @@ public class BluetoothConnectionService {
                     throw new IOException("All connection methods failed");
                 }
                 
-                // Get input and output streams
-                inputStream = socket.getInputStream();
-                outputStream = socket.getOutputStream();
-                
-                isConnected = true;
                 Log.d(TAG, "Successfully connected to device: " + device.getName());
-                
-                // Notify connection success on main thread
-                mainHandler.post(() -> {
-                    if (listener != null) {
-                        listener.onConnected(device);
-                    }
-                });
-                
-                // Start listening for incoming messages in a separate thread
-                startMessageListenerThread();
+                attach(new BluetoothSocketTransport(socket), device);
                 
             } catch (IOException e) {
                 Log.e(TAG, "Connection failed: " + e.getMessage());
@@ -177,46 +304,145 @@ public class BluetoothConnectionService {
         connectionThread.start();
     }
     
+    private static int[] connectOrder(int firstMethod) {
+        int[] order = { METHOD_CHANNEL_4, METHOD_SPP, METHOD_INSECURE };
+        if (firstMethod > 0 && firstMethod < order.length) {
+            order[firstMethod] = order[0];
+            order[0] = firstMethod;
+            // Keep the remaining fallbacks in their usual order
+            Arrays.sort(order, 1, order.length);
+        }
+        return order;
+    }
+    
+    private static BluetoothSocket openSocket(BluetoothDevice device, int method) throws Exception {
+        switch (method) {
+            case METHOD_SPP:
+                return device.createRfcommSocketToServiceRecord(SPP_UUID);
+            case METHOD_INSECURE:
+                return device.createInsecureRfcommSocketToServiceRecord(SPP_UUID);
+            default:
+                // RFCOMM channel 4 directly using reflection (for Python server)
+                return (BluetoothSocket) device.getClass()
+                    .getMethod("createRfcommSocket", int.class)
+                    .invoke(device, 4);
+        }
+    }
+    
+    private static String methodName(int method) {
+        switch (method) {
+            case METHOD_SPP: return "SPP UUID";
+            case METHOD_INSECURE: return "insecure RFCOMM socket";
+            default: return "RFCOMM channel 4";
+        }
+    }
+    
+    /**
+     * The method the current or last connection was made with
+     */
+    public int getConnectMethod() {
+        return connectMethod;
+    }
+    
+    /**
+     * Start talking over an already open transport, e.g. a loopback in tests.
+     * The device is only passed through to {@link ConnectionListener#onConnected}.
+     */
+    public void attach(Transport transport, BluetoothDevice device) throws IOException {
+        this.transport = transport;
+        inputStream = transport.getInputStream();
+        String prefix = device != null ? device.getAddress() : "transport";
+        bytesIn = metrics.counter(prefix + ".bytes_in");
+        linesIn = metrics.counter(prefix + ".lines_in");
+        messagesOut = metrics.counter(prefix + ".messages_out");
+        bytesOut = metrics.counter(prefix + ".bytes_out");
+        radioWakeups = metrics.counter(prefix + ".radio_wakeups");
+        samplesIn = metrics.counter(prefix + ".samples");
+        metrics.counter(prefix + ".connects").increment();
+        // The counters add up every connection to the adapter, the estimate is per connection
+        energyBaseline = new long[] { radioWakeups.get(), bytesIn.get() + bytesOut.get(), samplesIn.get() };
+        outboundBatcher = new OutboundBatcher(transport.getOutputStream());
+        isConnected = true;
+        
+        // Notify connection success on main thread
+        callbackExecutor.execute(() -> {
+            if (listener != null) {
+                listener.onConnected(device);
+            }
+        });
+        
+        // Start listening for incoming messages in a separate thread
+        startMessageListenerThread();
+    }
+    
     /**
      * Start the message listener thread
      */
     private void startMessageListenerThread() {
-        Thread messageListenerThread = new Thread(() -> {
+        readerExecutor.execute(() -> {
             Log.d(TAG, "Starting message listener thread");
             listenForMessages();
         });
-        messageListenerThread.setDaemon(true);
-        messageListenerThread.start();
     }
     
     /**
      * Listen for incoming messages from the server
      */
     private void listenForMessages() {
+        Transport transport = this.transport;
+        InputStream inputStream = this.inputStream;
+        MetricsRegistry.Counter bytesIn = this.bytesIn;
+        MetricsRegistry.Counter linesIn = this.linesIn;
+        MetricsRegistry.Counter radioWakeups = this.radioWakeups;
         byte[] buffer = new byte[1024];
+        LineFramer framer = new LineFramer();
+        IsoTpReassembler reassembler = new IsoTpReassembler();
+        long[] lineTime = new long[1];
+        IsoTpReassembler.MessageListener messageDispatcher = (header, data, length) -> {
+            IsoTpReassembler.MessageListener[] listeners = messageListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onMessage(header, data, length);
+            }
+            if (length > 2 && data[0] == PidParser.MODE_01_RESPONSE && sampleSinks.length > 0) {
+                // Decode here so sample consumers never wait on the main thread
+                PidParser.parsePayload(data, 1, length - 1, lineTime[0], sampleDispatcher);
+            }
+        };
+        List<String> lines = new ArrayList<>();
+        LineFramer.LineListener collector = line -> {
+            lines.add(line);
+            LineFramer.LineListener[] listeners = lineListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onLine(line);
+            }
+            lineTime[0] = System.currentTimeMillis();
+            reassembler.feed(line, lineTime[0], messageDispatcher);
+        };
         Log.d(TAG, "Message listener started, waiting for messages...");
         
-        while (isConnected && socket != null && socket.isConnected()) {
+        while (isConnected && transport.isOpen()) {
             try {
-                Log.d(TAG, "Waiting to read message from input stream...");
                 int bytesRead = inputStream.read(buffer);
-                Log.d(TAG, "Read " + bytesRead + " bytes from input stream");
                 
                 if (bytesRead > 0) {
-                    String message = new String(buffer, 0, bytesRead, "UTF-8").trim();
-                    Log.d(TAG, "Received message: '" + message + "'");
-                    
-                    // Notify message received on main thread
-                    mainHandler.post(() -> {
-                        Log.d(TAG, "Posting message to main thread: " + message);
-                        if (listener != null) {
-                            listener.onMessageReceived(message);
-                        } else {
-                            Log.w(TAG, "Listener is null, cannot notify message received");
-                        }
-                    });
+                    bytesIn.add(bytesRead);
+                    radioWakeups.increment();
+                    // One read can hold a partial line or several lines
+                    framer.feed(buffer, 0, bytesRead, collector);
+                    if (!lines.isEmpty()) {
+                        linesIn.add(lines.size());
+                        deliverMessages(new ArrayList<>(lines));
+                        lines.clear();
+                    }
+                    ByteSink[] sinks = byteSinks;
+                    for (int i = 0; i < sinks.length; i++) {
+                        sinks[i].onBytes(buffer, 0, bytesRead);
+                    }
                 } else if (bytesRead == -1) {
                     Log.d(TAG, "End of stream reached, connection closed by remote");
+                    if (isConnected) {
+                        disconnect();
+                    }
                     break;
                 }
             } catch (IOException e) {
@@ -231,43 +457,131 @@ public class BluetoothConnectionService {
     }
     
     /**
-     * Send a message to the connected device
+     * Hand all lines from one read to the main thread in a single post, or hold
+     * them back while the UI only wants a low rate
+     */
+    private void deliverMessages(List<String> messages) {
+        if (uiDeliveryIntervalMillis > 0) {
+            synchronized (heldMessages) {
+                heldMessages.addAll(messages);
+                if (heldMessages.size() > MAX_HELD_MESSAGES) {
+                    // The message log only keeps the newest lines anyway
+                    heldMessages.subList(0, heldMessages.size() - MAX_HELD_MESSAGES).clear();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastDeliveryMillis < uiDeliveryIntervalMillis) {
+                    return;
+                }
+                lastDeliveryMillis = now;
+                messages = new ArrayList<>(heldMessages);
+                heldMessages.clear();
+            }
+        }
+        postMessages(messages);
+    }
+    
+    private void postMessages(List<String> messages) {
+        callbackExecutor.execute(() -> {
+            if (listener == null) {
+                Log.w(TAG, "Listener is null, cannot notify message received");
+                return;
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                listener.onMessageReceived(messages.get(i));
+            }
+        });
+    }
+    
+    /**
+     * Deliver received lines to {@link ConnectionListener#onMessageReceived} at most
+     * once per interval, e.g. while the screen is off. Sample sinks, line and
+     * message listeners still get every line as it arrives, so alerts are not
+     * delayed. 0 delivers every read right away and flushes held lines.
+     */
+    public void setUiDeliveryIntervalMillis(long intervalMillis) {
+        uiDeliveryIntervalMillis = intervalMillis;
+        if (intervalMillis == 0) {
+            List<String> held;
+            synchronized (heldMessages) {
+                held = new ArrayList<>(heldMessages);
+                heldMessages.clear();
+            }
+            if (!held.isEmpty()) {
+                postMessages(held);
+            }
+        }
+    }
+    
+    /**
+     * Estimated radio energy per decoded sample of the current or last connection,
+     * see {@link RadioEnergyModel}
+     *
+     * @return millijoules per sample, NaN before the first sample
+     */
+    public double getEnergyPerSampleMillijoules() {
+        long[] baseline = energyBaseline;
+        if (baseline == null) {
+            return Double.NaN;
+        }
+        return RadioEnergyModel.perSample(radioWakeups.get() - baseline[0],
+            bytesIn.get() + bytesOut.get() - baseline[1], samplesIn.get() - baseline[2]);
+    }
+    
+    /**
+     * Send a message to the connected device. Messages sent in quick succession
+     * are written together by the writer thread.
      */
     public void sendMessage(String message) {
-        Log.d(TAG, "sendMessage called with: '" + message + "'");
-        Log.d(TAG, "Connection status - isConnected: " + isConnected + ", outputStream: " + (outputStream != null));
-        
-        if (!isConnected || outputStream == null) {
+        OutboundBatcher batcher = outboundBatcher;
+        if (!isConnected || batcher == null) {
             Log.w(TAG, "Cannot send message - not connected or no output stream");
             return;
         }
         
-        new Thread(() -> {
-            try {
-                Log.d(TAG, "Preparing to send message to output stream");
-                String messageWithNewline = message + "\n";
-                byte[] messageBytes = messageWithNewline.getBytes("UTF-8");
-                
-                Log.d(TAG, "Writing " + messageBytes.length + " bytes to output stream");
-                outputStream.write(messageBytes);
-                outputStream.flush();
-                
-                Log.d(TAG, "Successfully sent message: '" + message + "'");
-                
-                // Notify message sent on main thread
-                mainHandler.post(() -> {
-                    if (listener != null) {
-                        listener.onMessageSent(message);
-                    } else {
-                        Log.w(TAG, "Listener is null, cannot notify message sent");
-                    }
-                });
-                
-            } catch (IOException e) {
+        batcher.enqueue(message);
+        if (flushScheduled.compareAndSet(false, true)) {
+            writerExecutor.execute(() -> flushOutbound(batcher));
+        }
+    }
+    
+    /**
+     * Write everything queued so far, runs on the writer thread. The writer may be
+     * shared with other connections, so writes of this connection are serialized here.
+     */
+    private void flushOutbound(OutboundBatcher batcher) {
+        flushScheduled.set(false);
+        try {
+            List<String> sent;
+            synchronized (writeLock) {
+                sent = batcher.flush();
+            }
+            if (sent.isEmpty()) {
+                return;
+            }
+            messagesOut.add(sent.size());
+            radioWakeups.increment();
+            long bytes = 0;
+            for (int i = 0; i < sent.size(); i++) {
+                bytes += sent.get(i).length() + 1;
+            }
+            bytesOut.add(bytes);
+            
+            // Notify message sent on main thread
+            callbackExecutor.execute(() -> {
+                if (listener == null) {
+                    Log.w(TAG, "Listener is null, cannot notify message sent");
+                    return;
+                }
+                for (int i = 0; i < sent.size(); i++) {
+                    listener.onMessageSent(sent.get(i));
+                }
+            });
+        } catch (IOException e) {
+            if (isConnected) {
                 Log.e(TAG, "Error sending message: " + e.getMessage(), e);
                 disconnect();
             }
-        }).start();
+        }
     }
     
     /**
@@ -278,7 +592,7 @@ public class BluetoothConnectionService {
         cleanup();
         
         // Notify disconnection on main thread
-        mainHandler.post(() -> {
+        callbackExecutor.execute(() -> {
             if (listener != null) {
                 listener.onDisconnected();
             }
@@ -291,28 +605,34 @@ public class BluetoothConnectionService {
     private void cleanup() {
         isConnected = false;
         
+        // Take each field before closing it, disconnect() can race with the reader
+        InputStream inputStream = this.inputStream;
+        this.inputStream = null;
         try {
             if (inputStream != null) {
                 inputStream.close();
-                inputStream = null;
             }
         } catch (IOException e) {
             Log.e(TAG, "Error closing input stream: " + e.getMessage());
         }
         
+        outboundBatcher = null;
+        
+        Transport transport = this.transport;
+        this.transport = null;
         try {
-            if (outputStream != null) {
-                outputStream.close();
-                outputStream = null;
+            if (transport != null) {
+                transport.close();
             }
         } catch (IOException e) {
-            Log.e(TAG, "Error closing output stream: " + e.getMessage());
+            Log.e(TAG, "Error closing transport: " + e.getMessage());
         }
         
+        BluetoothSocket socket = this.socket;
+        this.socket = null;
         try {
             if (socket != null) {
                 socket.close();
-                socket = null;
             }
         } catch (IOException e) {
             Log.e(TAG, "Error closing socket: " + e.getMessage());
@@ -323,14 +643,15 @@ public class BluetoothConnectionService {
      * Check if currently connected
      */
     public boolean isConnected() {
-        return isConnected && socket != null && socket.isConnected();
+        Transport transport = this.transport;
+        return isConnected && transport != null && transport.isOpen();
     }
     
     /**
      * Notify connection failure on main thread
      */
     private void notifyConnectionFailed(String error) {
-        mainHandler.post(() -> {
+        callbackExecutor.execute(() -> {
             if (listener != null) {
                 listener.onConnectionFailed(error);
             }
@@ -345,5 +666,9 @@ public class BluetoothConnectionService {
         if (connectionThread != null && connectionThread.isAlive()) {
             connectionThread.interrupt();
         }
+        if (ownsExecutors) {
+            readerExecutor.shutdown();
+            writerExecutor.shutdown();
+        }
     }
 }
\ No newline at end of file
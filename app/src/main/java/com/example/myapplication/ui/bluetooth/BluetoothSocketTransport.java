@@ -0,0 +1,41 @@
+package com.example.myapplication.ui.bluetooth;
+
+import android.bluetooth.BluetoothSocket;
+
+import com.example.myapplication.io.Transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Transport backed by a connected RFCOMM socket
+ */
+public class BluetoothSocketTransport implements Transport {
+    
+    private final BluetoothSocket socket;
+    
+    public BluetoothSocketTransport(BluetoothSocket socket) {
+        this.socket = socket;
+    }
+    
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+    
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return socket.isConnected();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
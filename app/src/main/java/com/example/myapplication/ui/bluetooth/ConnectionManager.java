@@ -0,0 +1,97 @@
+package com.example.myapplication.ui.bluetooth;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.myapplication.util.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps one {@link BluetoothConnectionService} per adapter address so several
+ * adapters (e.g. one per workshop bay) can be connected at the same time.
+ *
+ * All connections share one reader pool, which grows by a thread per open
+ * connection for the blocking reads, a small writer pool and one metrics
+ * registry. Closing a connection leaves the shared threads running for the
+ * others; they are stopped by {@link #destroy()}.
+ */
+public class ConnectionManager {
+    
+    private static final int WRITER_THREADS = 2;
+    
+    private final Context context;
+    private final Executor callbackExecutor;
+    private final ExecutorService readerExecutor = BluetoothConnectionService.newReaderExecutor();
+    private final ExecutorService writerExecutor = BluetoothConnectionService.newWriterExecutor(WRITER_THREADS);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Map<String, BluetoothConnectionService> services = new LinkedHashMap<>();
+    
+    public ConnectionManager(Context context) {
+        this(context, new Handler(Looper.getMainLooper())::post);
+    }
+    
+    public ConnectionManager(Context context, Executor callbackExecutor) {
+        this.context = context;
+        this.callbackExecutor = callbackExecutor;
+    }
+    
+    /**
+     * The connection for an adapter, created on first use
+     */
+    public synchronized BluetoothConnectionService getOrCreate(String address) {
+        BluetoothConnectionService service = services.get(address);
+        if (service == null) {
+            service = new BluetoothConnectionService(context, callbackExecutor, readerExecutor, writerExecutor, metrics);
+            services.put(address, service);
+        }
+        return service;
+    }
+    
+    public synchronized BluetoothConnectionService get(String address) {
+        return services.get(address);
+    }
+    
+    /**
+     * Addresses of all open connections, in the order they were created
+     */
+    public synchronized List<String> getAddresses() {
+        return new ArrayList<>(services.keySet());
+    }
+    
+    public synchronized int size() {
+        return services.size();
+    }
+    
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Disconnect and forget one adapter, the others are left alone
+     */
+    public synchronized void close(String address) {
+        BluetoothConnectionService service = services.remove(address);
+        if (service != null) {
+            service.destroy();
+        }
+    }
+    
+    /**
+     * Disconnect every adapter and stop the shared threads
+     */
+    public synchronized void destroy() {
+        for (BluetoothConnectionService service : services.values()) {
+            service.destroy();
+        }
+        services.clear();
+        readerExecutor.shutdown();
+        writerExecutor.shutdown();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.myapplication.ui.bluetooth;
+
+/**
+ * Rough energy cost of a Bluetooth Classic link, for comparing polling settings
+ * rather than measuring the battery. Most of the cost of a small exchange is
+ * bringing the radio out of sniff mode, so the model charges a fixed amount per
+ * wakeup (a read or write burst) plus a small amount per byte on air.
+ */
+public final class RadioEnergyModel {
+    
+    static final double WAKEUP_MILLIJOULES = 1.5;
+    static final double BYTE_MILLIJOULES = 0.002;
+    
+    private RadioEnergyModel() {
+    }
+    
+    public static double estimateMillijoules(long wakeups, long bytes) {
+        return wakeups * WAKEUP_MILLIJOULES + bytes * BYTE_MILLIJOULES;
+    }
+    
+    /**
+     * @return estimated energy per decoded sample, NaN before the first sample
+     */
+    public static double perSample(long wakeups, long bytes, long samples) {
+        return samples > 0 ? estimateMillijoules(wakeups, bytes) / samples : Double.NaN;
+    }
+}
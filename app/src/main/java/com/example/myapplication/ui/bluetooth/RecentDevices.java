@@ -0,0 +1,84 @@
+package com.example.myapplication.ui.bluetooth;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapters connected to recently, most recent first, with the connection method
+ * that worked for each. Kept in shared preferences so the app can reconnect at
+ * launch without running discovery.
+ */
+public class RecentDevices {
+    
+    public static final int MAX_DEVICES = 5;
+    
+    private static final String PREFS_NAME = "connection";
+    private static final String KEY_RECENT = "recent_devices";
+    
+    private final SharedPreferences preferences;
+    private final List<String> addresses = new ArrayList<>();
+    private final List<Integer> methods = new ArrayList<>();
+    
+    /**
+     * Reads the preferences file, construct it off the main thread at startup
+     */
+    public RecentDevices(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        parse(preferences.getString(KEY_RECENT, ""));
+    }
+    
+    /**
+     * Entries are "address=method" separated by commas
+     */
+    private void parse(String stored) {
+        for (String entry : stored.split(",")) {
+            int separator = entry.indexOf('=');
+            if (separator <= 0) continue;
+            try {
+                methods.add(Integer.parseInt(entry.substring(separator + 1)));
+                addresses.add(entry.substring(0, separator));
+            } catch (NumberFormatException e) {
+                // Skip a damaged entry, the rest is still usable
+            }
+        }
+    }
+    
+    public synchronized List<String> getAddresses() {
+        return new ArrayList<>(addresses);
+    }
+    
+    /**
+     * The connection method that worked last time, or the default method
+     */
+    public synchronized int getConnectMethod(String address) {
+        int index = addresses.indexOf(address);
+        return index >= 0 ? methods.get(index) : BluetoothConnectionService.METHOD_CHANNEL_4;
+    }
+    
+    /**
+     * Move a device to the front after a successful connection
+     */
+    public synchronized void record(String address, int connectMethod) {
+        int index = addresses.indexOf(address);
+        if (index >= 0) {
+            addresses.remove(index);
+            methods.remove(index);
+        }
+        addresses.add(0, address);
+        methods.add(0, connectMethod);
+        while (addresses.size() > MAX_DEVICES) {
+            addresses.remove(addresses.size() - 1);
+            methods.remove(methods.size() - 1);
+        }
+        
+        StringBuilder stored = new StringBuilder();
+        for (int i = 0; i < addresses.size(); i++) {
+            if (i > 0) stored.append(',');
+            stored.append(addresses.get(i)).append('=').append(methods.get(i));
+        }
+        preferences.edit().putString(KEY_RECENT, stored.toString()).apply();
+    }
+}
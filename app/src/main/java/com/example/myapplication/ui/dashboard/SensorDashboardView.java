@@ -0,0 +1,309 @@
+package com.example.myapplication.ui.dashboard;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.View;
+
+import com.example.myapplication.obd.ObdPid;
+import com.example.myapplication.obd.SampleSink;
+
+/**
+ * Live tiles for every signal in the decoded sample stream, each showing the latest
+ * value over a sparkline of its recent history.
+ *
+ * Samples arrive on the Bluetooth listener thread and only go into fixed size
+ * history rings; at most one redraw is scheduled per vsync, and only when something
+ * changed. Drawing works from preallocated buffers, paths and paints, so a frame
+ * allocates nothing however many signals are updating.
+ *
+ * With a wrap_content height the view is one tile row per few signals tall and
+ * grows as new signals appear; put it in a ScrollView to bound it on screen.
+ */
+public class SensorDashboardView extends View implements SampleSink {
+    private static final String TAG = "SensorDashboardView";
+    
+    private static final int MAX_SIGNALS = 32;
+    private static final int HISTORY = 120;
+    private static final long FRAME_BUDGET_NANOS = 16_000_000L;
+    private static final int TILE_MIN_WIDTH_DP = 110;
+    private static final int TILE_HEIGHT_DP = 72;
+    
+    // Written by the listener thread, guarded by lock
+    private final Object lock = new Object();
+    private final int[] slotForPid = new int[256];
+    private final int[] slotPids = new int[MAX_SIGNALS];
+    private final float[][] history = new float[MAX_SIGNALS][HISTORY];
+    private final int[] historyHead = new int[MAX_SIGNALS];
+    private final int[] historyCount = new int[MAX_SIGNALS];
+    private int signalCount = 0;
+    private boolean dirty = false;
+    private boolean frameScheduled = false;
+    
+    // Only touched on the UI thread
+    private final float[][] drawHistory = new float[MAX_SIGNALS][HISTORY];
+    private final int[] drawCount = new int[MAX_SIGNALS];
+    private final int[] labelPids = new int[MAX_SIGNALS];
+    private final String[] labels = new String[MAX_SIGNALS];
+    private final String[] units = new String[MAX_SIGNALS];
+    private final Path[] sparklines = new Path[MAX_SIGNALS];
+    private final char[] valueChars = new char[24];
+    private int drawSignalCount = 0;
+    private int columns = 1;
+    private float tileWidth;
+    private float tileHeight;
+    private int overBudgetFrames = 0;
+    
+    private final Paint tilePaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint valuePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float density;
+    
+    private final Runnable frameCallback = () -> {
+        synchronized (lock) {
+            frameScheduled = false;
+        }
+        invalidate();
+    };
+    
+    public SensorDashboardView(Context context) {
+        this(context, null);
+    }
+    
+    public SensorDashboardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        
+        for (int i = 0; i < slotForPid.length; i++) {
+            slotForPid[i] = -1;
+        }
+        for (int i = 0; i < MAX_SIGNALS; i++) {
+            sparklines[i] = new Path();
+            labelPids[i] = -1;
+        }
+        
+        tilePaint.setColor(Color.rgb(0xF2, 0xF2, 0xF2));
+        labelPaint.setColor(Color.DKGRAY);
+        labelPaint.setTextSize(11 * density);
+        valuePaint.setColor(Color.BLACK);
+        valuePaint.setTextSize(20 * density);
+        valuePaint.setFakeBoldText(true);
+        linePaint.setColor(Color.rgb(0x00, 0x99, 0xCC));
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(1.5f * density);
+    }
+    
+    /**
+     * Called from the listener thread for every decoded sample
+     */
+    @Override
+    public void onSample(int pid, long timestampMillis, double value) {
+        if (pid < 0 || pid >= slotForPid.length) return;
+        boolean schedule;
+        synchronized (lock) {
+            int slot = slotForPid[pid];
+            if (slot < 0) {
+                if (signalCount == MAX_SIGNALS) return;
+                slot = signalCount++;
+                slotForPid[pid] = slot;
+                slotPids[slot] = pid;
+            }
+            int head = historyHead[slot];
+            history[slot][head] = (float) value;
+            historyHead[slot] = (head + 1) % HISTORY;
+            if (historyCount[slot] < HISTORY) historyCount[slot]++;
+            
+            dirty = true;
+            schedule = !frameScheduled;
+            frameScheduled = true;
+        }
+        if (schedule) {
+            // Coalesce everything that arrives before the next vsync into one redraw
+            postOnAnimation(frameCallback);
+        }
+    }
+    
+    /**
+     * Forget all signals, e.g. when a new session starts
+     */
+    public void clear() {
+        synchronized (lock) {
+            for (int i = 0; i < signalCount; i++) {
+                slotForPid[slotPids[i]] = -1;
+                historyCount[i] = 0;
+                historyHead[i] = 0;
+            }
+            signalCount = 0;
+            dirty = true;
+        }
+        invalidate();
+    }
+    
+    /**
+     * Frames since creation whose onDraw took longer than the 16 ms budget
+     */
+    public int getOverBudgetFrames() {
+        return overBudgetFrames;
+    }
+    
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int rows = rowsFor(drawSignalCount, columnsFor(width));
+        int desired = Math.round(rows * TILE_HEIGHT_DP * density) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(desired, heightMeasureSpec));
+    }
+    
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateLayout();
+    }
+    
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        super.onDraw(canvas);
+        
+        int previousCount = drawSignalCount;
+        copyHistory();
+        if (drawSignalCount != previousCount) {
+            if (rowsFor(drawSignalCount, columns) != rowsFor(previousCount, columns)) {
+                // A new row of tiles, measure again so it isn't clipped
+                requestLayout();
+            }
+            updateLayout();
+        }
+        
+        float padding = 4 * density;
+        for (int slot = 0; slot < drawSignalCount; slot++) {
+            float left = (slot % columns) * tileWidth;
+            float top = (slot / columns) * tileHeight;
+            canvas.drawRect(left + padding / 2, top + padding / 2,
+                left + tileWidth - padding / 2, top + tileHeight - padding / 2, tilePaint);
+            
+            int count = drawCount[slot];
+            if (count == 0) continue;
+            float[] values = drawHistory[slot];
+            
+            canvas.drawText(labels[slot], left + padding * 2, top + padding * 2 - labelPaint.ascent(), labelPaint);
+            int length = formatValue(values[count - 1], units[slot], valueChars);
+            canvas.drawText(valueChars, 0, length, left + padding * 2,
+                top + padding * 3 - labelPaint.ascent() - valuePaint.ascent(), valuePaint);
+            
+            buildSparkline(sparklines[slot], values, count, left + padding * 2, top + tileHeight * 0.6f,
+                tileWidth - padding * 4, tileHeight * 0.4f - padding * 2);
+            canvas.drawPath(sparklines[slot], linePaint);
+        }
+        
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        if (elapsed > FRAME_BUDGET_NANOS) {
+            overBudgetFrames++;
+            Log.w(TAG, "Dashboard frame took " + elapsed / 1_000_000 + " ms");
+        }
+    }
+    
+    /**
+     * Copy the rings, oldest sample first, so drawing doesn't hold the lock
+     */
+    private void copyHistory() {
+        synchronized (lock) {
+            if (!dirty) return;
+            dirty = false;
+            for (int slot = 0; slot < signalCount; slot++) {
+                int count = historyCount[slot];
+                int start = (historyHead[slot] - count + HISTORY) % HISTORY;
+                int first = Math.min(count, HISTORY - start);
+                System.arraycopy(history[slot], start, drawHistory[slot], 0, first);
+                System.arraycopy(history[slot], 0, drawHistory[slot], first, count - first);
+                drawCount[slot] = count;
+                if (labelPids[slot] != slotPids[slot]) {
+                    labelPids[slot] = slotPids[slot];
+                    labels[slot] = ObdPid.name(slotPids[slot]);
+                    units[slot] = ObdPid.unit(slotPids[slot]);
+                }
+            }
+            drawSignalCount = signalCount;
+        }
+    }
+    
+    private void updateLayout() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width == 0 || height == 0) return;
+        columns = columnsFor(width);
+        int rows = rowsFor(drawSignalCount, columns);
+        tileWidth = (float) width / columns;
+        tileHeight = Math.max(TILE_HEIGHT_DP * density, (float) height / rows);
+    }
+    
+    private int columnsFor(int width) {
+        return Math.max(1, (int) (width / (TILE_MIN_WIDTH_DP * density)));
+    }
+    
+    private static int rowsFor(int signals, int columns) {
+        return Math.max(1, (signals + columns - 1) / columns);
+    }
+    
+    private static void buildSparkline(Path path, float[] values, int count,
+                                       float left, float top, float width, float height) {
+        path.rewind();
+        if (count < 2) return;
+        float min = values[0];
+        float max = values[0];
+        for (int i = 1; i < count; i++) {
+            if (values[i] < min) min = values[i];
+            if (values[i] > max) max = values[i];
+        }
+        float range = max - min;
+        float scale = range > 0 ? height / range : 0;
+        float step = width / (HISTORY - 1);
+        // Right-align so the newest sample is always at the right edge
+        float x = left + width - step * (count - 1);
+        for (int i = 0; i < count; i++) {
+            float y = range > 0 ? top + height - (values[i] - min) * scale : top + height / 2;
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+            x += step;
+        }
+    }
+    
+    /**
+     * Format value with one decimal followed by the unit, without allocating
+     */
+    static int formatValue(float value, String unit, char[] out) {
+        int pos = 0;
+        long tenths = Math.round(Math.abs((double) value) * 10);
+        if (value < 0 && tenths != 0) out[pos++] = '-';
+        long whole = tenths / 10;
+        int digitsStart = pos;
+        do {
+            out[pos++] = (char) ('0' + whole % 10);
+            whole /= 10;
+        } while (whole > 0 && pos < out.length - 8);
+        // Digits were written least significant first
+        for (int i = digitsStart, j = pos - 1; i < j; i++, j--) {
+            char c = out[i];
+            out[i] = out[j];
+            out[j] = c;
+        }
+        out[pos++] = '.';
+        out[pos++] = (char) ('0' + tenths % 10);
+        if (!unit.isEmpty()) {
+            out[pos++] = ' ';
+            int n = Math.min(unit.length(), out.length - pos);
+            unit.getChars(0, n, out, pos);
+            pos += n;
+        }
+        return pos;
+    }
+}
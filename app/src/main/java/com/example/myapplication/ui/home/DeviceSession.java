@@ -0,0 +1,111 @@
+package com.example.myapplication.ui.home;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.example.myapplication.data.SessionRecorder;
+import com.example.myapplication.obd.DtcScanner;
+import com.example.myapplication.obd.ObdPid;
+import com.example.myapplication.obd.PidPoller;
+import com.example.myapplication.obd.VehicleProbe;
+import com.example.myapplication.obd.VehicleProfile;
+import com.example.myapplication.rules.AnomalyRule;
+import com.example.myapplication.rules.RuleEngine;
+import com.example.myapplication.ui.bluetooth.BluetoothConnectionService;
+import com.example.myapplication.util.MessageLogBuffer;
+
+import java.util.List;
+
+/**
+ * Everything the home screen keeps for one adapter: its connection, recorder,
+ * vehicle probe, PID poller, fault code scanner and message log. Sessions keep
+ * running while another one is shown; switching only changes which log and
+ * dashboard are on screen.
+ */
+class DeviceSession {
+    
+    /** Signals shown on the dashboard and watched by the default rules */
+    static final int[] POLLED_PIDS = {
+        ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED, ObdPid.COOLANT_TEMP, ObdPid.ENGINE_LOAD,
+        ObdPid.THROTTLE_POSITION, ObdPid.MAF_RATE, ObdPid.INTAKE_AIR_TEMP, ObdPid.LONG_TERM_FUEL_TRIM_1,
+        ObdPid.CONTROL_MODULE_VOLTAGE, ObdPid.OIL_TEMP, ObdPid.FUEL_LEVEL
+    };
+    
+    final BluetoothDevice device;
+    final String name;
+    final BluetoothConnectionService service;
+    final SessionRecorder recorder;
+    final DtcScanner dtcScanner;
+    final PidPoller poller;
+    final VehicleProbe probe;
+    /** Profile of the car on the other end, null until the probe is done */
+    VehicleProfile profile;
+    final MessageLogBuffer messageLog = new MessageLogBuffer();
+    RuleEngine ruleEngine;
+    boolean connected = false;
+    String status = "Not connected";
+    
+    DeviceSession(BluetoothDevice device, String name, BluetoothConnectionService service,
+                  SessionRecorder recorder, VehicleProbe.ProfileCache profileCache) {
+        this.device = device;
+        this.name = name;
+        this.service = service;
+        this.recorder = recorder;
+        this.dtcScanner = new DtcScanner(service::sendMessage);
+        service.addSampleSink(recorder);
+        service.addLineListener(dtcScanner);
+        service.addMessageListener(dtcScanner);
+        this.poller = new PidPoller(service::sendMessage);
+        service.addSampleSink(poller);
+        service.addMessageListener(poller);
+        service.addLineListener(poller);
+        poller.start();
+        this.probe = new VehicleProbe(service::sendMessage, profileCache);
+        service.addMessageListener(probe);
+        service.addLineListener(probe);
+    }
+    
+    /**
+     * Check the default anomaly rules on every decoded sample of this session
+     */
+    void watch(RuleEngine.AlertListener alertListener) {
+        List<AnomalyRule> rules = AnomalyRule.defaults();
+        ruleEngine = new RuleEngine(rules, alertListener);
+        service.addSampleSink(ruleEngine);
+        // Signals with rules keep a short poll interval in power saving mode
+        int[] watched = new int[rules.size()];
+        for (int i = 0; i < watched.length; i++) {
+            watched[i] = rules.get(i).pid;
+        }
+        poller.setCriticalPids(watched);
+    }
+    
+    /**
+     * Poll the dashboard signals the car's profile says it supports, or all of them
+     * if there is no profile. PIDs that go unanswered are only dropped by the poller
+     * for this connection, a car may just not have answered them this time.
+     */
+    void startPolling(boolean powerSaving) {
+        poller.setPids(profile != null ? profile.filterSupported(POLLED_PIDS) : POLLED_PIDS);
+        poller.setMultiPidRequests(profile != null && profile.isCan());
+        poller.setPowerSaving(powerSaving);
+        poller.resume();
+    }
+    
+    String getAddress() {
+        return device.getAddress();
+    }
+    
+    /**
+     * Label for the session picker
+     */
+    String label() {
+        return name + (connected ? " (connected)" : " (disconnected)");
+    }
+    
+    void close() {
+        poller.shutdown();
+        probe.shutdown();
+        dtcScanner.shutdown();
+        recorder.stop();
+    }
+}
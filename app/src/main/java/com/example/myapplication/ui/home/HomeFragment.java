@@ -8,15 +8,23 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.Trace;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
@@ -24,31 +32,72 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
+import com.example.myapplication.data.DtcDescriptions;
+import com.example.myapplication.data.SessionDatabase;
+import com.example.myapplication.data.SessionRecorder;
+import com.example.myapplication.data.SessionTransfer;
+import com.example.myapplication.data.VehicleProfileCache;
 import com.example.myapplication.databinding.FragmentHomeBinding;
+import com.example.myapplication.io.TcpBridge;
+import com.example.myapplication.obd.Dtc;
+import com.example.myapplication.obd.DtcScanResult;
+import com.example.myapplication.obd.ObdPid;
+import com.example.myapplication.obd.VehicleProfile;
+import com.example.myapplication.rules.AnomalyRule;
+import com.example.myapplication.rules.RuleEngine;
 import com.example.myapplication.ui.bluetooth.BluetoothConnectionService;
 import com.example.myapplication.ui.bluetooth.BluetoothDeviceAdapter;
 import com.example.myapplication.ui.bluetooth.BluetoothDeviceItem;
+import com.example.myapplication.ui.bluetooth.ConnectionManager;
+import com.example.myapplication.ui.bluetooth.RecentDevices;
+import com.example.myapplication.util.KeyedList;
+import com.example.myapplication.util.MessageLogBuffer;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnDeviceActionListener {
 
     private FragmentHomeBinding binding;
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothConnectionService connectionService;
+    private ConnectionManager connectionManager;
+    private RecentDevices recentDevices;
+    private ArrayDeque<BluetoothDevice> autoConnectQueue;
+    private DeviceSession autoConnectSession;
+    private final Map<String, DeviceSession> sessions = new LinkedHashMap<>();
+    private final List<DeviceSession> sessionOrder = new ArrayList<>();
+    private DeviceSession activeSession;
+    private ArrayAdapter<String> sessionAdapter;
+    private DtcDescriptions dtcDescriptions;
     private BluetoothDeviceAdapter deviceAdapter;
-    private List<BluetoothDeviceItem> discoveredDevices;
+    private final KeyedList<BluetoothDeviceItem> discoveredDevices = new KeyedList<>(BluetoothDeviceItem::getAddress);
+    private final MessageLogBuffer messageLog = new MessageLogBuffer();
     private BluetoothDevice selectedDevice;
-    private boolean isConnected = false;
     private boolean isScanning = false;
+    private boolean receiverRegistered = false;
+    private boolean reportedFullyDrawn = false;
+    private boolean powerSaving = false;
+    private TcpBridge bridge;
     
+    private final ActivityResultLauncher<String[]> importLauncher =
+        registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importSession);
+    
+    private static final String TAG = "HomeFragment";
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_PERMISSIONS = 2;
+    /** How often received lines reach a hidden log in power saving mode */
+    private static final long HIDDEN_UI_INTERVAL_MS = 5000;
+    /** Port of the local bridge, the one Wi-Fi ELM327 adapters use */
+    private static final int BRIDGE_PORT = 35000;
     
     private final BroadcastReceiver deviceFoundReceiver = new BroadcastReceiver() {
         @Override
@@ -72,80 +121,316 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
         binding = FragmentHomeBinding.inflate(inflater, container, false);
         View root = binding.getRoot();
         
-        initializeBluetooth();
+        // Only cheap view setup here; Bluetooth and storage come up in the background
         setupUI();
         setupRecyclerView();
         setupClickListeners();
+        initializeInBackground();
         
         return root;
     }
     
-    @Override
-    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
-        super.onViewCreated(view, savedInstanceState);
-        
-        // Register broadcast receiver for device discovery
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(BluetoothDevice.ACTION_FOUND);
-        filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
-        requireContext().registerReceiver(deviceFoundReceiver, filter);
+    /**
+     * Startup work that doesn't need to block the first frame: getting the adapter,
+     * opening (and if needed migrating) the session database and reading the recent
+     * devices. The controls that need Bluetooth stay disabled until it is done.
+     */
+    private void initializeInBackground() {
+        Context appContext = requireContext().getApplicationContext();
+        // The view may be destroyed and recreated before this is done
+        FragmentHomeBinding startedFor = binding;
+        new Thread(() -> {
+            Trace.beginSection("HomeFragment.initialize");
+            BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+            DtcDescriptions descriptions = new DtcDescriptions(appContext);
+            RecentDevices recent = new RecentDevices(appContext);
+            try {
+                SessionDatabase.getInstance(appContext).getWritableDatabase();
+            } catch (RuntimeException e) {
+                // Recording will retry and log it again; don't hold up the UI for it
+                Log.e(TAG, "Could not open the session database: " + e.getMessage(), e);
+            } finally {
+                Trace.endSection();
+            }
+            postToUi(() -> {
+                if (binding != startedFor) return;
+                onBluetoothReady(adapter, descriptions, recent);
+            });
+        }, "home-startup").start();
     }
     
-    private void initializeBluetooth() {
-        bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        discoveredDevices = new ArrayList<>();
+    private void onBluetoothReady(BluetoothAdapter adapter, DtcDescriptions descriptions, RecentDevices recent) {
+        bluetoothAdapter = adapter;
+        dtcDescriptions = descriptions;
+        recentDevices = recent;
         
         if (bluetoothAdapter == null) {
             Toast.makeText(getContext(), "Bluetooth not supported on this device", Toast.LENGTH_LONG).show();
             return;
         }
         
-        // Initialize connection service
-        connectionService = new BluetoothConnectionService(getContext());
-        setupConnectionService();
+        // One connection per adapter, all sharing reader/writer threads and metrics
+        connectionManager = new ConnectionManager(getContext());
+        updateUIState();
+        autoConnect();
+    }
+    
+    /**
+     * Reconnect to a known adapter without discovery: recent devices that are
+     * still bonded are listed right away and tried most recent first, using the
+     * connection method that worked for each last time
+     */
+    private void autoConnect() {
+        if (!hasRequiredPermissions() || !bluetoothAdapter.isEnabled()) return;
+        
+        Map<String, BluetoothDevice> bonded = new HashMap<>();
+        try {
+            for (BluetoothDevice device : bluetoothAdapter.getBondedDevices()) {
+                bonded.put(device.getAddress(), device);
+                addDiscoveredDevice(device);
+            }
+        } catch (SecurityException e) {
+            return;
+        }
+        
+        autoConnectQueue = new ArrayDeque<>();
+        for (String address : recentDevices.getAddresses()) {
+            BluetoothDevice device = bonded.get(address);
+            if (device != null) {
+                autoConnectQueue.add(device);
+            }
+        }
+        tryNextAutoConnect();
     }
     
-    private void setupConnectionService() {
-        connectionService.setConnectionListener(new BluetoothConnectionService.ConnectionListener() {
+    private void tryNextAutoConnect() {
+        BluetoothDevice device = autoConnectQueue != null ? autoConnectQueue.poll() : null;
+        if (device == null) {
+            if (autoConnectQueue != null) {
+                appendToMessageLog("No known device answered, scan to find one");
+                autoConnectQueue = null;
+            }
+            return;
+        }
+        DeviceSession session = sessionFor(device);
+        autoConnectSession = session;
+        setActiveSession(session);
+        updateSessionStatus(session, "Connecting to " + session.name + "...");
+        appendToSessionLog(session, "Reconnecting to " + session.name);
+        session.service.connect(device, recentDevices.getConnectMethod(device.getAddress()));
+    }
+    
+    /**
+     * The user took over, e.g. picked a device or started a scan
+     */
+    private void cancelAutoConnect() {
+        autoConnectQueue = null;
+        autoConnectSession = null;
+    }
+    
+    private void registerDiscoveryReceiver() {
+        if (receiverRegistered) return;
+        // Registered on first scan rather than at startup
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(BluetoothDevice.ACTION_FOUND);
+        filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
+        requireContext().registerReceiver(deviceFoundReceiver, filter);
+        receiverRegistered = true;
+    }
+    
+    /**
+     * The session for a device, opened on first use. Each session has its own
+     * connection, recorder and fault code scanner, so scans are only diffed against
+     * earlier scans of the same vehicle.
+     */
+    private DeviceSession sessionFor(BluetoothDevice device) {
+        DeviceSession session = sessions.get(device.getAddress());
+        if (session == null) {
+            BluetoothConnectionService service = connectionManager.getOrCreate(device.getAddress());
+            // Record decoded samples of every session to the local database
+            SessionDatabase database = SessionDatabase.getInstance(requireContext());
+            SessionRecorder recorder = new SessionRecorder(database);
+            session = new DeviceSession(device, getDeviceName(device), service, recorder,
+                new VehicleProfileCache(database));
+            DeviceSession recorded = session;
+            recorder.setErrorListener(error ->
+                postToUi(() -> appendToSessionLog(recorded, "Recording failed: " + error)));
+            setupConnectionListener(session);
+            session.watch(alertListenerFor(session));
+            sessions.put(device.getAddress(), session);
+            sessionOrder.add(session);
+        }
+        return session;
+    }
+    
+    /**
+     * Alerts are raised on the listener thread as the samples are decoded and
+     * posted straight to the main thread, bypassing the message log batching
+     */
+    private RuleEngine.AlertListener alertListenerFor(DeviceSession session) {
+        return new RuleEngine.AlertListener() {
+            @Override
+            public void onAlert(AnomalyRule rule, double value, long timestampMillis) {
+                String text = "ALERT " + rule.name + ": " + formatSample(rule.pid, value);
+                postToUi(() -> {
+                    appendToSessionLog(session, text);
+                    if (session == activeSession) {
+                        Toast.makeText(getContext(), text, Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+            
+            @Override
+            public void onAlertCleared(AnomalyRule rule, double value, long timestampMillis) {
+                String text = "Cleared " + rule.name + ": " + formatSample(rule.pid, value);
+                postToUi(() -> appendToSessionLog(session, text));
+            }
+        };
+    }
+    
+    private static String formatSample(int pid, double value) {
+        return ObdPid.name(pid) + " " + String.format(Locale.US, "%.1f", value) + " " + ObdPid.unit(pid);
+    }
+    
+    private void postToUi(Runnable action) {
+        if (getActivity() == null) return;
+        getActivity().runOnUiThread(() -> {
+            if (binding == null) return;
+            action.run();
+        });
+    }
+    
+    private void setupConnectionListener(DeviceSession session) {
+        session.service.setConnectionListener(new BluetoothConnectionService.ConnectionListener() {
             @Override
             public void onConnected(BluetoothDevice device) {
-                isConnected = true;
-                selectedDevice = device;
-                updateConnectionStatus("Connected to " + getDeviceName(device));
-                updateUIState();
-                appendToMessageLog("Connected to " + getDeviceName(device));
+                session.connected = true;
+                session.recorder.start(device.getAddress());
+                session.ruleEngine.reset();
+                probeVehicle(session);
+                recentDevices.record(device.getAddress(), session.service.getConnectMethod());
+                if (session == autoConnectSession) {
+                    cancelAutoConnect();
+                }
+                if (!reportedFullyDrawn && getActivity() != null) {
+                    // First connection since launch; the startup benchmark reads this
+                    // as the cold start to connected time
+                    reportedFullyDrawn = true;
+                    getActivity().reportFullyDrawn();
+                }
+                if (session == activeSession && binding != null) {
+                    binding.sensorDashboard.clear();
+                }
+                updateSessionStatus(session, "Connected to " + session.name);
+                appendToSessionLog(session, "Connected to " + session.name);
             }
             
             @Override
             public void onDisconnected() {
-                isConnected = false;
-                selectedDevice = null;
-                updateConnectionStatus("Disconnected");
-                updateUIState();
-                appendToMessageLog("Disconnected from device");
+                session.poller.pauseImmediately();
+                session.recorder.stop();
+                session.connected = false;
+                updateSessionStatus(session, "Disconnected");
+                appendToSessionLog(session, "Disconnected from device");
+                appendEnergyEstimate(session);
             }
             
             @Override
             public void onConnectionFailed(String error) {
-                isConnected = false;
-                updateConnectionStatus("Connection failed: " + error);
-                updateUIState();
-                appendToMessageLog("Connection failed: " + error);
+                session.connected = false;
+                updateSessionStatus(session, "Connection failed: " + error);
+                appendToSessionLog(session, "Connection failed: " + error);
+                if (session == autoConnectSession && binding != null) {
+                    // Not in range, try the next known device
+                    tryNextAutoConnect();
+                }
             }
             
             @Override
             public void onMessageReceived(String message) {
-                appendToMessageLog("Received: " + message);
+                appendToSessionLog(session, "Received: " + message);
             }
             
             @Override
             public void onMessageSent(String message) {
-                appendToMessageLog("Sent: " + message);
+                appendToSessionLog(session, "Sent: " + message);
             }
         });
     }
     
+    /**
+     * Find out what the car supports, from the profile cache if it has been here
+     * before, then start polling
+     */
+    private void probeVehicle(DeviceSession session) {
+        session.profile = null;
+        session.dtcScanner.setEcuHeaders(new int[0]);
+        session.probe.probe(DeviceSession.POLLED_PIDS, (profile, fromCache) -> postToUi(() -> {
+            session.profile = profile;
+            // Fault code scans ask every ECU the probe found
+            session.dtcScanner.setEcuHeaders(profile.getEcuHeaders());
+            if (!session.connected) return;
+            session.startPolling(powerSaving);
+            appendToSessionLog(session, describeProfile(profile, fromCache));
+        }));
+    }
+    
+    private static String describeProfile(VehicleProfile profile, boolean fromCache) {
+        String vehicle = profile.vin.isEmpty() ? "Vehicle without VIN" : "Vehicle " + profile.vin;
+        int polled = profile.getPollPids().length;
+        if (fromCache) {
+            return vehicle + ": known profile, polling " + polled + " PIDs";
+        }
+        return vehicle + ": " + profile.getEcuHeaders().length + " ECUs, polling " + polled + " supported PIDs";
+    }
+    
+    /**
+     * Show another session; the one shown before keeps running in the background
+     */
+    private void setActiveSession(DeviceSession session) {
+        if (session == activeSession) return;
+        if (activeSession != null) {
+            activeSession.service.removeSampleSink(binding.sensorDashboard);
+            if (bridge != null) {
+                activeSession.service.removeByteSink(bridge);
+            }
+        }
+        activeSession = session;
+        selectedDevice = session.device;
+        binding.sensorDashboard.clear();
+        session.service.addSampleSink(binding.sensorDashboard);
+        if (bridge != null) {
+            // The bridge follows the session on screen
+            session.service.addByteSink(bridge);
+        }
+        
+        updateSessionPicker();
+        updateConnectionStatus(session.status);
+        showMessageLog(session.messageLog);
+        updateUIState();
+    }
+    
+    private boolean isActiveConnected() {
+        return activeSession != null && activeSession.connected;
+    }
+    
     private void setupUI() {
+        sessionAdapter = new ArrayAdapter<>(requireContext(), android.R.layout.simple_spinner_item, new ArrayList<>());
+        sessionAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        binding.spinnerSessions.setAdapter(sessionAdapter);
+        binding.spinnerSessions.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                if (position < sessionOrder.size()) {
+                    setActiveSession(sessionOrder.get(position));
+                }
+            }
+            
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        updateSessionPicker();
         updateConnectionStatus("Not connected");
         updateUIState();
     }
@@ -167,7 +452,7 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
         });
         
         binding.buttonConnectDisconnect.setOnClickListener(v -> {
-            if (isConnected) {
+            if (isActiveConnected()) {
                 disconnectFromDevice();
             } else {
                 // Connect button is enabled only when a device is selected
@@ -176,9 +461,103 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
         });
         
         binding.buttonSendMessage.setOnClickListener(v -> sendMessage());
+        
+        binding.buttonScanDtcs.setOnClickListener(v -> scanDtcs());
+        
+        binding.buttonExportSession.setOnClickListener(v -> exportSession());
+        
+        binding.buttonImportSession.setOnClickListener(v -> importLauncher.launch(new String[] { "*/*" }));
+        
+        binding.switchPowerSaving.setOnCheckedChangeListener((button, checked) -> setPowerSaving(checked));
+        
+        binding.switchBridge.setOnCheckedChangeListener((button, checked) -> {
+            if (checked) {
+                startBridge();
+            } else {
+                stopBridge();
+            }
+        });
+    }
+    
+    /**
+     * Let desktop tools on this device (e.g. over adb forward) read the raw stream
+     * of the session on screen
+     */
+    private void startBridge() {
+        if (bridge != null) return;
+        try {
+            bridge = new TcpBridge(BRIDGE_PORT);
+        } catch (IOException e) {
+            appendToMessageLog("Could not start bridge: " + e.getMessage());
+            binding.switchBridge.setChecked(false);
+            return;
+        }
+        bridge.start();
+        if (activeSession != null) {
+            activeSession.service.addByteSink(bridge);
+        }
+        appendToMessageLog("Bridge listening on 127.0.0.1:" + bridge.getPort());
+    }
+    
+    private void stopBridge() {
+        if (bridge == null) return;
+        if (activeSession != null) {
+            activeSession.service.removeByteSink(bridge);
+        }
+        bridge.close();
+        bridge = null;
+        if (binding != null) {
+            appendToMessageLog("Bridge stopped");
+        }
+    }
+    
+    /**
+     * Slow down stable signals and, while the screen is off, the message log of
+     * every session. Alerts are evaluated on every sample either way.
+     */
+    private void setPowerSaving(boolean enabled) {
+        powerSaving = enabled;
+        for (DeviceSession session : sessionOrder) {
+            session.poller.setPowerSaving(enabled);
+        }
+        if (activeSession != null) {
+            appendToSessionLog(activeSession, "Power saving " + (enabled ? "on" : "off"));
+            appendEnergyEstimate(activeSession);
+        }
+    }
+    
+    private void appendEnergyEstimate(DeviceSession session) {
+        double energy = session.service.getEnergyPerSampleMillijoules();
+        if (!Double.isNaN(energy)) {
+            appendToSessionLog(session, String.format(Locale.US, "Radio energy estimate: %.2f mJ per sample", energy));
+        }
+    }
+    
+    @Override
+    public void onStart() {
+        super.onStart();
+        for (DeviceSession session : sessionOrder) {
+            session.service.setUiDeliveryIntervalMillis(0);
+        }
+    }
+    
+    @Override
+    public void onStop() {
+        super.onStop();
+        if (!powerSaving) return;
+        // Screen off or app in the background: nobody reads the log, the rules
+        // and the recorder still see every sample
+        for (DeviceSession session : sessionOrder) {
+            session.service.setUiDeliveryIntervalMillis(HIDDEN_UI_INTERVAL_MS);
+        }
     }
     
     private void startDeviceDiscovery() {
+        if (bluetoothAdapter == null) {
+            Toast.makeText(getContext(), "Bluetooth is not ready", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
         if (!hasRequiredPermissions()) {
             requestPermissions();
             return;
@@ -192,7 +571,7 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
         
         // Clear previous results
         discoveredDevices.clear();
-        deviceAdapter.submitList(new ArrayList<>(discoveredDevices));
+        deviceAdapter.submitList(discoveredDevices.snapshot());
         
         // Add paired devices first
         addPairedDevices();
@@ -202,6 +581,8 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
             bluetoothAdapter.cancelDiscovery();
         }
         
+        cancelAutoConnect();
+        registerDiscoveryReceiver();
         boolean discoveryStarted = bluetoothAdapter.startDiscovery();
         if (discoveryStarted) {
             isScanning = true;
@@ -236,27 +617,28 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
     
     private void addDiscoveredDevice(BluetoothDevice device) {
         // Check if device already in list
-        for (BluetoothDeviceItem item : discoveredDevices) {
-            if (item.getAddress().equals(device.getAddress())) {
-                return; // Already added
-            }
+        if (discoveredDevices.containsKey(device.getAddress())) {
+            return; // Already added
         }
         
         BluetoothDeviceItem deviceItem = new BluetoothDeviceItem(device);
         discoveredDevices.add(deviceItem);
-        deviceAdapter.submitList(new ArrayList<>(discoveredDevices));
+        deviceAdapter.submitList(discoveredDevices.snapshot());
     }
     
     private void connectToSelectedDevice() {
-        if (selectedDevice != null && connectionService != null) {
-            updateConnectionStatus("Connecting to " + getDeviceName(selectedDevice) + "...");
-            connectionService.connect(selectedDevice);
+        if (selectedDevice != null && connectionManager != null) {
+            cancelAutoConnect();
+            DeviceSession session = sessionFor(selectedDevice);
+            setActiveSession(session);
+            updateSessionStatus(session, "Connecting to " + session.name + "...");
+            session.service.connect(selectedDevice, recentDevices.getConnectMethod(selectedDevice.getAddress()));
         }
     }
     
     private void disconnectFromDevice() {
-        if (connectionService != null) {
-            connectionService.disconnect();
+        if (activeSession != null) {
+            activeSession.service.disconnect();
         }
     }
     
@@ -267,14 +649,117 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
             return;
         }
         
-        if (connectionService != null && isConnected) {
-            connectionService.sendMessage(message);
+        if (isActiveConnected()) {
+            activeSession.service.sendMessage(message);
             binding.editMessage.setText(""); // Clear input
         } else {
             Toast.makeText(getContext(), "Not connected to any device", Toast.LENGTH_SHORT).show();
         }
     }
     
+    private void scanDtcs() {
+        if (!isActiveConnected()) {
+            Toast.makeText(getContext(), "Not connected to any device", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        DeviceSession session = activeSession;
+        binding.buttonScanDtcs.setEnabled(false);
+        appendToSessionLog(session, "Reading fault codes...");
+        // The adapter runs one request at a time, the poller's last reply has to be
+        // in before the scan starts; pausing waits for it, so not on this thread
+        session.dtcScanner.scan(session.poller::pause, (result, changes) -> {
+            // Look descriptions up on the scanner thread, the table is mapped lazily
+            List<String> lines = new ArrayList<>();
+            for (DtcScanResult.Change change : changes) {
+                String code = Dtc.format(change.code);
+                if (change.added) {
+                    lines.add("DTC " + code + " (" + Dtc.modeName(change.mode) + "): "
+                        + dtcDescriptions.describe(change.code));
+                    session.recorder.recordDtc(code, change.mode, result.getTimestampMillis());
+                } else {
+                    lines.add("Cleared " + code + " (" + Dtc.modeName(change.mode) + ")");
+                }
+            }
+            if (lines.isEmpty()) {
+                lines.add(result.totalCount() == 0
+                    ? "No fault codes found"
+                    : "No changes since last scan (" + result.totalCount() + " codes)");
+            }
+            if (result.isPartial()) {
+                lines.add("Scan incomplete, not every ECU answered in time");
+            }
+            
+            if (session.service.isConnected()) {
+                session.poller.resume();
+            }
+            
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (binding == null) return;
+                for (String line : lines) {
+                    appendToSessionLog(session, line);
+                }
+                updateUIState();
+            });
+        });
+    }
+    
+    /**
+     * Write the latest recorded session of the shown adapter to an archive in the
+     * app's external files, where it can be shared or pulled by the backend
+     */
+    private void exportSession() {
+        if (activeSession == null) return;
+        DeviceSession session = activeSession;
+        SessionDatabase database = SessionDatabase.getInstance(requireContext());
+        File directory = requireContext().getExternalFilesDir("exports");
+        appendToSessionLog(session, "Exporting session...");
+        new Thread(() -> {
+            String result;
+            try {
+                long sessionId = database.latestSessionId(session.getAddress());
+                if (sessionId < 0) {
+                    result = "No recorded session to export";
+                } else {
+                    File file = new File(directory, "session-" + sessionId + SessionTransfer.FILE_EXTENSION);
+                    long samples = new SessionTransfer(database).exportSession(sessionId, file);
+                    result = "Exported " + samples + " samples to " + file.getAbsolutePath();
+                }
+            } catch (IOException | RuntimeException e) {
+                result = "Export failed: " + e.getMessage();
+            }
+            String message = result;
+            postToUi(() -> appendToSessionLog(session, message));
+        }, "session-export").start();
+    }
+    
+    private void importSession(@Nullable Uri uri) {
+        if (uri == null) return;
+        SessionDatabase database = SessionDatabase.getInstance(requireContext());
+        ParcelFileDescriptor descriptor;
+        try {
+            descriptor = requireContext().getContentResolver().openFileDescriptor(uri, "r");
+        } catch (IOException e) {
+            appendToMessageLog("Import failed: " + e.getMessage());
+            return;
+        }
+        if (descriptor == null) return;
+        appendToMessageLog("Importing session...");
+        new Thread(() -> {
+            String result;
+            try (ParcelFileDescriptor file = descriptor;
+                 FileInputStream input = new FileInputStream(file.getFileDescriptor())) {
+                long sessionId = new SessionTransfer(database).importSession(input.getChannel());
+                result = "Imported session #" + sessionId;
+            } catch (IOException | RuntimeException e) {
+                result = "Import failed: " + e.getMessage();
+            }
+            String message = result;
+            postToUi(() -> appendToMessageLog(message));
+        }, "session-import").start();
+    }
+    
     private void updateScanButton() {
         binding.buttonScanDevices.setText(isScanning ? "Stop Scan" : "Scan Devices");
     }
@@ -283,24 +768,60 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
         binding.textConnectionStatus.setText("Status: " + status);
     }
     
+    private void updateSessionStatus(DeviceSession session, String status) {
+        session.status = status;
+        if (binding == null) return;
+        updateSessionPicker();
+        if (session == activeSession) {
+            updateConnectionStatus(status);
+            updateUIState();
+        }
+    }
+    
+    private void updateSessionPicker() {
+        List<String> labels = new ArrayList<>(sessionOrder.size());
+        for (DeviceSession session : sessionOrder) {
+            labels.add(session.label());
+        }
+        sessionAdapter.clear();
+        sessionAdapter.addAll(labels);
+        binding.spinnerSessions.setVisibility(sessionOrder.isEmpty() ? View.GONE : View.VISIBLE);
+        int position = sessionOrder.indexOf(activeSession);
+        if (position >= 0 && binding.spinnerSessions.getSelectedItemPosition() != position) {
+            binding.spinnerSessions.setSelection(position);
+        }
+    }
+    
     private void updateUIState() {
-        binding.buttonConnectDisconnect.setText(isConnected ? "Disconnect" : "Connect");
-        binding.buttonConnectDisconnect.setEnabled(isConnected || selectedDevice != null);
-        binding.editMessage.setEnabled(isConnected);
-        binding.buttonSendMessage.setEnabled(isConnected);
+        boolean connected = isActiveConnected();
+        binding.buttonConnectDisconnect.setText(connected ? "Disconnect" : "Connect");
+        binding.buttonConnectDisconnect.setEnabled(connected || selectedDevice != null);
+        binding.editMessage.setEnabled(connected);
+        binding.buttonSendMessage.setEnabled(connected);
+        binding.buttonScanDtcs.setEnabled(connected);
+        binding.buttonExportSession.setEnabled(activeSession != null);
+        binding.buttonScanDevices.setEnabled(bluetoothAdapter != null);
     }
     
+    /**
+     * Log to the session on screen, or the general log before any session is open
+     */
     private void appendToMessageLog(String message) {
-        String timestamp = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(new Date());
-        String logEntry = "[" + timestamp + "] " + message;
-        
-        String currentLog = binding.textMessageLog.getText().toString();
-        if (currentLog.equals("Messages will appear here...")) {
-            currentLog = "";
+        appendToSessionLog(activeSession, message);
+    }
+    
+    private void appendToSessionLog(DeviceSession session, String message) {
+        if (binding == null) return;
+        // The log is bounded, so long sessions don't make every append slower
+        MessageLogBuffer log = session != null ? session.messageLog : messageLog;
+        log.append(System.currentTimeMillis(), message);
+        if (session == activeSession) {
+            showMessageLog(log);
         }
-        
-        String newLog = currentLog + "\n" + logEntry;
-        binding.textMessageLog.setText(newLog);
+    }
+    
+    private void showMessageLog(MessageLogBuffer log) {
+        binding.textMessageLog.setText(log.getText());
         
         // Scroll to bottom of the ScrollView
         binding.scrollMessageLog.post(() -> {
@@ -380,6 +901,11 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
     @Override
     public void onConnectClick(BluetoothDeviceItem deviceItem) {
         selectedDevice = deviceItem.getDevice();
+        DeviceSession session = sessions.get(deviceItem.getAddress());
+        if (session != null) {
+            // Already has a session, show it instead of opening another
+            setActiveSession(session);
+        }
         updateUIState();
         
         String deviceName = getDeviceName(selectedDevice);
@@ -397,16 +923,32 @@ public class HomeFragment extends Fragment implements BluetoothDeviceAdapter.OnD
         }
         
         // Unregister broadcast receiver
-        try {
-            requireContext().unregisterReceiver(deviceFoundReceiver);
-        } catch (IllegalArgumentException e) {
-            // Receiver not registered
+        if (receiverRegistered) {
+            try {
+                requireContext().unregisterReceiver(deviceFoundReceiver);
+            } catch (IllegalArgumentException e) {
+                // Receiver not registered
+            }
+            receiverRegistered = false;
         }
         
-        // Clean up connection service
-        if (connectionService != null) {
-            connectionService.destroy();
+        // Clean up every session and the shared connection threads
+        stopBridge();
+        if (activeSession != null) {
+            activeSession.service.removeSampleSink(binding.sensorDashboard);
+        }
+        for (DeviceSession session : sessionOrder) {
+            session.close();
+        }
+        if (connectionManager != null) {
+            connectionManager.destroy();
+            connectionManager = null;
         }
+        // The sessions are dead now, a new view starts without any
+        sessions.clear();
+        sessionOrder.clear();
+        activeSession = null;
+        cancelAutoConnect();
         
         binding = null;
     }
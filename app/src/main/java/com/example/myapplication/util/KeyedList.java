@@ -0,0 +1,67 @@
+package com.example.myapplication.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Insertion ordered list that ignores items whose key is already present.
+ * Lookups go through a hash set instead of scanning the list.
+ */
+public class KeyedList<T> {
+    
+    public interface KeyExtractor<T> {
+        String keyOf(T item);
+    }
+    
+    private final KeyExtractor<T> keyExtractor;
+    private final List<T> items = new ArrayList<>();
+    private final Set<String> keys = new HashSet<>();
+    
+    public KeyedList(KeyExtractor<T> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+    
+    public boolean containsKey(String key) {
+        return keys.contains(key);
+    }
+    
+    /**
+     * Add an item unless one with the same key is already in the list
+     *
+     * @return true if the item was added
+     */
+    public boolean add(T item) {
+        if (!keys.add(keyExtractor.keyOf(item))) {
+            return false;
+        }
+        items.add(item);
+        return true;
+    }
+    
+    public void clear() {
+        items.clear();
+        keys.clear();
+    }
+    
+    public int size() {
+        return items.size();
+    }
+    
+    public T get(int index) {
+        return items.get(index);
+    }
+    
+    public List<T> asList() {
+        return Collections.unmodifiableList(items);
+    }
+    
+    /**
+     * Copy of the current items, for handing over to a ListAdapter
+     */
+    public List<T> snapshot() {
+        return new ArrayList<>(items);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.myapplication.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Bounded, timestamped text log backing the message log view.
+ * Appending only touches the tail of the buffer; once the line limit is reached
+ * the oldest line is dropped so the log cannot grow without bound. Dropping only
+ * moves a start offset. The dropped text is cut off the front of the buffer once
+ * it makes up half of it, so an append costs amortized constant time however
+ * full the log is.
+ */
+public class MessageLogBuffer {
+    
+    public static final int DEFAULT_MAX_LINES = 500;
+    
+    private final int maxLines;
+    private final StringBuilder text = new StringBuilder(4096);
+    private final int[] lineLengths;
+    private int firstLine = 0;
+    private int lineCount = 0;
+    /** Where the oldest kept line starts in text */
+    private int head = 0;
+    private final CharSequence view = new CharSequence() {
+        @Override
+        public int length() {
+            return text.length() - head;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            return text.charAt(head + index);
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(head + start, head + end);
+        }
+        
+        @Override
+        public String toString() {
+            return text.substring(head);
+        }
+    };
+    
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
+    private final Date date = new Date();
+    private long stampSecond = Long.MIN_VALUE;
+    private String stamp;
+    
+    public MessageLogBuffer() {
+        this(DEFAULT_MAX_LINES);
+    }
+    
+    public MessageLogBuffer(int maxLines) {
+        this.maxLines = maxLines;
+        this.lineLengths = new int[maxLines];
+    }
+    
+    /**
+     * Append "[HH:mm:ss] message" as a new line
+     */
+    public void append(long timeMillis, String message) {
+        if (lineCount == maxLines) {
+            dropOldestLine();
+        }
+        
+        int start = text.length();
+        if (lineCount > 0) {
+            text.append('\n');
+        }
+        text.append('[').append(timestamp(timeMillis)).append("] ").append(message);
+        
+        lineLengths[(firstLine + lineCount) % maxLines] = text.length() - start;
+        lineCount++;
+    }
+    
+    public int lineCount() {
+        return lineCount;
+    }
+    
+    public boolean isEmpty() {
+        return lineCount == 0;
+    }
+    
+    /**
+     * Current log contents. The returned sequence is live, copy it before keeping it.
+     */
+    public CharSequence getText() {
+        return view;
+    }
+    
+    public void clear() {
+        text.setLength(0);
+        head = 0;
+        firstLine = 0;
+        lineCount = 0;
+    }
+    
+    private void dropOldestLine() {
+        int length = lineLengths[firstLine];
+        firstLine = (firstLine + 1) % maxLines;
+        lineCount--;
+        // The next line now starts the log, so its leading '\n' goes as well
+        if (lineCount > 0) {
+            lineLengths[firstLine]--;
+            length++;
+        }
+        head = Math.min(head + length, text.length());
+        if (head > text.length() / 2) {
+            text.delete(0, head);
+            head = 0;
+        }
+    }
+    
+    private String timestamp(long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second != stampSecond) {
+            date.setTime(timeMillis);
+            stamp = timeFormat.format(date);
+            stampSecond = second;
+        }
+        return stamp;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.myapplication.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters shared by every connection of the app. Counters are looked up
+ * once and then incremented from the reader and writer threads without locking.
+ */
+public class MetricsRegistry {
+    
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+        
+        public void increment() {
+            value.increment();
+        }
+        
+        public void add(long amount) {
+            value.add(amount);
+        }
+        
+        public long get() {
+            return value.sum();
+        }
+    }
+    
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    
+    /**
+     * The counter with this name, created on first use
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, key -> new Counter());
+    }
+    
+    /**
+     * Current value of every counter, sorted by name
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+}
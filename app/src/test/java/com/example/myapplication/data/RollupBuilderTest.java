@@ -0,0 +1,51 @@
+package com.example.myapplication.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RollupBuilderTest {
+    
+    @Test
+    public void bucketIsEmittedWhenNextOneStarts() {
+        RollupBuilder builder = new RollupBuilder();
+        RollupBatch buckets = new RollupBatch();
+        
+        builder.add(0x0C, 10_000, 800, buckets);
+        builder.add(0x0C, 10_400, 1200, buckets);
+        builder.add(0x0C, 10_900, 1000, buckets);
+        assertEquals(0, buckets.size());
+        
+        builder.add(0x0C, 11_100, 900, buckets);
+        assertEquals(1, buckets.size());
+        assertEquals(1_000, buckets.tier(0));
+        assertEquals(10_000, buckets.time(0));
+        assertEquals(800, buckets.min(0), 0);
+        assertEquals(1200, buckets.max(0), 0);
+        assertEquals(1000, buckets.avg(0), 1e-9);
+        assertEquals(3, buckets.count(0));
+    }
+    
+    @Test
+    public void flushEmitsEveryTier() {
+        RollupBuilder builder = new RollupBuilder();
+        RollupBatch buckets = new RollupBatch();
+        
+        builder.add(0x0D, 5_000, 50, buckets);
+        builder.add(0x05, 5_000, 90, buckets);
+        builder.flush(buckets);
+        
+        assertEquals(2 * RollupBuilder.TIER_MILLIS.length, buckets.size());
+    }
+    
+    @Test
+    public void tierMatchesPixelWidth() {
+        // One hour on a 1000 px chart: 3.6 s per pixel, use the 1 s tier
+        assertEquals(1_000, RollupBuilder.tierFor(3_600_000, 1000));
+        // Ten hours: 36 s per pixel
+        assertEquals(10_000, RollupBuilder.tierFor(36_000_000, 1000));
+        assertEquals(60_000, RollupBuilder.tierFor(360_000_000, 1000));
+        // One minute: sub-second per pixel, raw samples
+        assertEquals(0, RollupBuilder.tierFor(60_000, 1000));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.myapplication.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SessionArchiveTest {
+    
+    @Test
+    public void seriesRoundTripIsExact() {
+        Random random = new Random(42);
+        long[] times = new long[10_000];
+        double[] values = new double[times.length];
+        long time = 1_700_000_000_000L;
+        double value = 90;
+        for (int i = 0; i < times.length; i++) {
+            // Mostly steady polling with some jitter, gaps and going backwards once
+            time += i == 5000 ? -30_000 : i % 1000 == 0 ? 60_000 : 100 + random.nextInt(7) - 3;
+            value = i % 7 == 0 ? value : value + random.nextGaussian();
+            times[i] = time;
+            values[i] = i == 3 ? Double.NaN : i == 4 ? -0.0 : value;
+        }
+        
+        SeriesEncoder encoder = new SeriesEncoder(16);
+        for (int i = 0; i < times.length; i++) {
+            encoder.add(times[i], values[i]);
+        }
+        SeriesDecoder decoder = new SeriesDecoder();
+        decoder.reset(encoder.buffer(), encoder.byteLength(), encoder.count());
+        for (int i = 0; i < times.length; i++) {
+            decoder.next();
+            assertEquals(times[i], decoder.time());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.value()));
+        }
+        assertFalse(decoder.hasNext());
+    }
+    
+    @Test
+    public void steadySignalCompresses() {
+        SeriesEncoder encoder = new SeriesEncoder();
+        for (int i = 0; i < 1000; i++) {
+            encoder.add(1000L + i * 100, 87.0);
+        }
+        // 16 bytes for the first sample, then about 2 bits per sample
+        assertTrue(encoder.byteLength() < 300);
+    }
+    
+    @Test
+    public void archiveRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionArchiveWriter writer = new SessionArchiveWriter(Channels.newChannel(bytes), "00:11:22:33:44:55", 1000, 99_000);
+        List<String> expected = new ArrayList<>();
+        for (int pid : new int[] { 0x05, 0x0C }) {
+            for (int i = 0; i < SessionArchiveWriter.MAX_BLOCK_SAMPLES + 10; i++) {
+                writer.addSample(pid, 1000 + i * 250L, pid * 100 + (i % 50) * 0.25);
+                expected.add(pid + "@" + (1000 + i * 250L) + "=" + (pid * 100 + (i % 50) * 0.25));
+            }
+        }
+        writer.addDtc("P0301", 3, 5000);
+        writer.finish();
+        
+        List<String> read = new ArrayList<>();
+        List<String> other = new ArrayList<>();
+        new SessionArchiveReader(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())))
+            .read(new SessionArchiveReader.Listener() {
+                @Override
+                public void onHeader(String deviceAddress, long startedAt, long endedAt) {
+                    other.add(deviceAddress + " " + startedAt + "-" + endedAt);
+                }
+                
+                @Override
+                public void onDtc(String code, int mode, long timeMillis) {
+                    other.add(code + " " + mode + " " + timeMillis);
+                }
+                
+                @Override
+                public void onSample(int pid, long timestampMillis, double value) {
+                    read.add(pid + "@" + timestampMillis + "=" + value);
+                }
+            });
+        assertEquals(expected, read);
+        assertEquals(List.of("00:11:22:33:44:55 1000-99000", "P0301 3 5000"), other);
+        // Far below the 20 bytes per sample of the raw columns
+        assertTrue(bytes.size() < read.size() * 3);
+    }
+    
+    @Test
+    public void worstCaseBlockFitsItsBound() {
+        Random random = new Random(3);
+        SeriesEncoder encoder = new SeriesEncoder();
+        long time = 0;
+        for (int i = 0; i < SessionArchiveWriter.MAX_BLOCK_SAMPLES; i++) {
+            // Huge jumps in time and random bit patterns defeat both encodings
+            time += (i % 2 == 0 ? 1 : -1) * (1L << 40) + random.nextInt();
+            encoder.add(time, Double.longBitsToDouble(random.nextLong() | 1));
+        }
+        assertTrue(encoder.byteLength() <= SeriesEncoder.maxByteLength(encoder.count()));
+    }
+    
+    @Test
+    public void corruptBlockSizesFailWithoutAllocating() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionArchiveWriter writer = new SessionArchiveWriter(Channels.newChannel(bytes), "a", 0, 0);
+        for (int i = 0; i < 100; i++) {
+            writer.addSample(0x0C, i * 100L, i);
+        }
+        writer.finish();
+        // Header, then the block's type, pid, sample count and byte length
+        int countOffset = 4 + 2 + 8 + 8 + 2 + 1 + 1 + 1;
+        
+        byte[] hugeLength = bytes.toByteArray();
+        ByteBuffer.wrap(hugeLength).putInt(countOffset + 4, Integer.MAX_VALUE);
+        assertCorrupt(hugeLength);
+        
+        byte[] hugeCount = bytes.toByteArray();
+        ByteBuffer.wrap(hugeCount).putInt(countOffset, SessionArchiveWriter.MAX_BLOCK_SAMPLES + 1);
+        assertCorrupt(hugeCount);
+    }
+    
+    private static void assertCorrupt(byte[] data) {
+        try {
+            new SessionArchiveReader(Channels.newChannel(new ByteArrayInputStream(data)))
+                .read(new SessionArchiveReader.Listener() {
+                    public void onHeader(String deviceAddress, long startedAt, long endedAt) {}
+                    public void onDtc(String code, int mode, long timeMillis) {}
+                    public void onSample(int pid, long timestampMillis, double value) {}
+                });
+            fail("Read a corrupt archive");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupt sample block"));
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void truncatedArchiveFails() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionArchiveWriter writer = new SessionArchiveWriter(Channels.newChannel(bytes), "a", 0, 0);
+        for (int i = 0; i < 100; i++) {
+            writer.addSample(0x0C, i * 100L, i);
+        }
+        writer.finish();
+        byte[] data = bytes.toByteArray();
+        new SessionArchiveReader(Channels.newChannel(new ByteArrayInputStream(data, 0, data.length - 10)))
+            .read(new SessionArchiveReader.Listener() {
+                public void onHeader(String deviceAddress, long startedAt, long endedAt) {}
+                public void onDtc(String code, int mode, long timeMillis) {}
+                public void onSample(int pid, long timestampMillis, double value) {}
+            });
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.myapplication.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Which table {@link SessionHistory#query} reads, with the database queries replaced
+ * by canned series.
+ */
+public class SessionHistoryTest {
+    
+    private static final long HOUR = 3_600_000;
+    
+    /**
+     * Answers from fixed rows and records which queries were made
+     */
+    private static class CannedHistory extends SessionHistory {
+        final List<String> queries = new ArrayList<>();
+        final boolean hasRollups;
+        
+        CannedHistory(boolean hasRollups) {
+            super(null);
+            this.hasRollups = hasRollups;
+        }
+        
+        @Override
+        Series queryRollups(long sessionId, int pid, long tier, long from, long to, int capacity) {
+            queries.add("rollups " + tier);
+            Series series = new Series(tier, capacity);
+            if (hasRollups) series.add(from, 700, 900, 800);
+            return series;
+        }
+        
+        @Override
+        Series querySamples(long sessionId, int pid, long from, long to, int capacity) {
+            queries.add("samples");
+            Series series = new Series(0, capacity);
+            series.add(from, 800, 800, 800);
+            return series;
+        }
+    }
+    
+    @Test
+    public void longRangeReadsRollups() {
+        CannedHistory history = new CannedHistory(true);
+        
+        SessionHistory.Series series = history.query(1, 0x0C, 0, HOUR, 1000);
+        
+        assertEquals(List.of("rollups 1000"), history.queries);
+        assertEquals(1_000, series.resolutionMillis);
+        assertEquals(900, series.max[0], 0);
+    }
+    
+    @Test
+    public void shortRangeReadsRawSamples() {
+        CannedHistory history = new CannedHistory(true);
+        
+        SessionHistory.Series series = history.query(1, 0x0C, 0, 60_000, 1000);
+        
+        assertEquals(List.of("samples"), history.queries);
+        assertEquals(0, series.resolutionMillis);
+    }
+    
+    @Test
+    public void sessionWithoutRollupsFallsBackToRawSamples() {
+        // Recorded before schema v2, so only the samples table has rows
+        CannedHistory history = new CannedHistory(false);
+        
+        SessionHistory.Series series = history.query(1, 0x0C, 0, 10 * HOUR, 1000);
+        
+        assertEquals(List.of("rollups 10000", "samples"), history.queries);
+        assertEquals(0, series.resolutionMillis);
+        assertEquals(1, series.size);
+    }
+}
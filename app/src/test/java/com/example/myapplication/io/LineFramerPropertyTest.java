@@ -0,0 +1,83 @@
+package com.example.myapplication.io;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Randomized checks that framing doesn't depend on how the stream is split
+ * into reads. Each trial uses its own seed, which is part of the failure message.
+ */
+public class LineFramerPropertyTest {
+    
+    private static final int TRIALS = 1000;
+    private static final String[] TERMINATORS = { "\r", "\n", "\r\n", "\r\r>" };
+    private static final String ALPHABET = "0123456789ABCDEF :.?";
+    
+    private static List<String> frame(LineFramer framer, byte[] data, Random random, int maxFragment) {
+        List<String> lines = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            int count = maxFragment <= 0 ? data.length : Math.min(data.length - offset, 1 + random.nextInt(maxFragment));
+            framer.feed(data, offset, count, lines::add);
+            offset += count;
+        }
+        return lines;
+    }
+    
+    @Test
+    public void linesSurviveAnyFragmentation() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Random random = new Random(trial);
+            StringBuilder stream = new StringBuilder();
+            List<String> expected = new ArrayList<>();
+            int lineCount = random.nextInt(20);
+            for (int i = 0; i < lineCount; i++) {
+                StringBuilder line = new StringBuilder();
+                int length = random.nextInt(40);
+                for (int j = 0; j < length; j++) {
+                    line.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+                stream.append(line).append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+                String trimmed = line.toString().trim();
+                if (!trimmed.isEmpty()) expected.add(trimmed);
+            }
+            byte[] data = stream.toString().getBytes(StandardCharsets.US_ASCII);
+            
+            LineFramer framer = new LineFramer();
+            assertEquals("seed " + trial, expected, frame(framer, data, random, 1 + random.nextInt(16)));
+            assertEquals("seed " + trial, 0, framer.pendingLength());
+        }
+    }
+    
+    @Test
+    public void arbitraryBytesFrameTheSameWholeOrInPieces() {
+        byte[] special = { '\r', '\n', '>', ' ', 0 };
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Random random = new Random(trial);
+            byte[] data = new byte[random.nextInt(300)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = random.nextInt(4) == 0 ? special[random.nextInt(special.length)] : (byte) ('A' + random.nextInt(26));
+            }
+            // A short maximum so over-long lines are split too
+            int maxLine = 4 + random.nextInt(32);
+            
+            LineFramer whole = new LineFramer(maxLine);
+            List<String> expected = frame(whole, data, random, 0);
+            LineFramer pieces = new LineFramer(maxLine);
+            List<String> actual = frame(pieces, data, random, 1 + random.nextInt(8));
+            
+            assertEquals("seed " + trial, expected, actual);
+            assertEquals("seed " + trial, whole.pendingLength(), pieces.pendingLength());
+            for (String line : actual) {
+                assertTrue("seed " + trial, line.length() <= maxLine);
+                assertEquals("seed " + trial, line.trim(), line);
+            }
+        }
+    }
+}
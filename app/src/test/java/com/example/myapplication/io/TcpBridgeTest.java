@@ -0,0 +1,110 @@
+package com.example.myapplication.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class TcpBridgeTest {
+    
+    private TcpBridge bridge;
+    
+    @Before
+    public void setUp() throws IOException {
+        bridge = new TcpBridge(0);
+        bridge.start();
+    }
+    
+    @After
+    public void tearDown() {
+        bridge.close();
+    }
+    
+    private Socket subscribe(int expectedCount) throws IOException, InterruptedException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), bridge.getPort());
+        socket.setSoTimeout(5000);
+        awaitSubscribers(expectedCount);
+        return socket;
+    }
+    
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bridge.getSubscriberCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, bridge.getSubscriberCount());
+    }
+    
+    private static String read(Socket socket, int length) throws IOException {
+        InputStream in = socket.getInputStream();
+        byte[] data = new byte[length];
+        int total = 0;
+        while (total < length) {
+            int n = in.read(data, total, length - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return new String(data, 0, total, StandardCharsets.US_ASCII);
+    }
+    
+    private void send(String text) {
+        byte[] data = ("xx" + text).getBytes(StandardCharsets.US_ASCII);
+        // Offset into a bigger array, like the reader's reused buffer
+        bridge.onBytes(data, 2, data.length - 2);
+    }
+    
+    @Test
+    public void everySubscriberGetsTheSameBytes() throws Exception {
+        try (Socket first = subscribe(1); Socket second = subscribe(2)) {
+            send("41 0C 1A F8\r");
+            send("41 0D 32\r\r>");
+            
+            String expected = "41 0C 1A F8\r41 0D 32\r\r>";
+            assertEquals(expected, read(first, expected.length()));
+            assertEquals(expected, read(second, expected.length()));
+        }
+    }
+    
+    @Test
+    public void bytesBeforeSubscribingAreNotReplayed() throws Exception {
+        send("ignored\r");
+        try (Socket socket = subscribe(1)) {
+            send("41 05 7B\r");
+            assertEquals("41 05 7B\r", read(socket, 9));
+        }
+    }
+    
+    @Test
+    public void subscriberInputIsIgnoredAndClosedSubscribersAreDropped() throws Exception {
+        Socket leaving = subscribe(1);
+        try (Socket staying = subscribe(2)) {
+            staying.getOutputStream().write("ATZ\r".getBytes(StandardCharsets.US_ASCII));
+            leaving.close();
+            awaitSubscribers(1);
+            
+            send("OK\r");
+            assertEquals("OK\r", read(staying, 3));
+        }
+    }
+    
+    @Test
+    public void largeStreamsArriveInOrder() throws Exception {
+        try (Socket socket = subscribe(1)) {
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 20000; i++) {
+                String line = String.format(Locale.US, "41 0C %04X\r", i);
+                expected.append(line);
+                send(line);
+            }
+            assertEquals(expected.toString(), read(socket, expected.length()));
+        }
+    }
+}
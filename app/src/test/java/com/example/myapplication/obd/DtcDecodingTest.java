@@ -0,0 +1,81 @@
+package com.example.myapplication.obd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class DtcDecodingTest {
+    
+    private static List<String> decode(int mode, String... lines) {
+        DtcResponseDecoder decoder = new DtcResponseDecoder();
+        decoder.reset(mode);
+        List<String> codes = new ArrayList<>();
+        for (String line : lines) {
+            decoder.feed(line, raw -> codes.add(Dtc.format(raw)));
+        }
+        return codes;
+    }
+    
+    @Test
+    public void formatAndParseRoundTrip() {
+        assertEquals("P0133", Dtc.format(0x0133));
+        assertEquals("U0100", Dtc.format(0xC100));
+        assertEquals(0x0133, Dtc.parse("P0133"));
+        assertEquals(0xC100, Dtc.parse("U0100"));
+        assertEquals(-1, Dtc.parse("X0100"));
+    }
+    
+    @Test
+    public void legacyLinesSkipPadding() {
+        assertEquals(List.of("P0133", "P0420", "P0300", "P0171"),
+            decode(Dtc.MODE_STORED, "43 01 33 04 20 03 00", "43 01 71 00 00 00 00"));
+    }
+    
+    @Test
+    public void canSingleFrameUsesCount() {
+        DtcResponseDecoder decoder = new DtcResponseDecoder();
+        decoder.reset(Dtc.MODE_PENDING);
+        List<Integer> codes = new ArrayList<>();
+        decoder.feed("47 02 01 33 00 00", codes::add);
+        // 0000 is a real code slot here because the count says two
+        assertEquals(List.of(0x0133, 0x0000), codes);
+        assertTrue(decoder.isComplete());
+    }
+    
+    @Test
+    public void canMultiFrameIsDecodedAcrossLines() {
+        assertEquals(List.of("P0133", "P0244", "P0300", "P0420"),
+            decode(Dtc.MODE_STORED, "00A", "0: 43 04 01 33 02", "1: 44 03 00 04 20 AA AA"));
+    }
+    
+    @Test
+    public void noDataCompletesReply() {
+        DtcResponseDecoder decoder = new DtcResponseDecoder();
+        decoder.reset(Dtc.MODE_PERMANENT);
+        decoder.feed("NO DATA", raw -> fail());
+        assertTrue(decoder.isComplete());
+    }
+    
+    @Test
+    public void tableLookupFromWrittenBytes() throws Exception {
+        Map<Integer, String> descriptions = new TreeMap<>();
+        descriptions.put(Dtc.parse("P0420"), "Catalyst System Efficiency Below Threshold (Bank 1)");
+        descriptions.put(Dtc.parse("P0133"), "O2 Sensor Circuit Slow Response (Bank 1 Sensor 1)");
+        descriptions.put(Dtc.parse("U0100"), "Lost Communication With ECM/PCM A");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DtcTableWriter.write(descriptions, out);
+        
+        DtcTable table = new DtcTable(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(3, table.size());
+        assertEquals("Lost Communication With ECM/PCM A", table.describe(Dtc.parse("U0100")));
+        assertEquals("O2 Sensor Circuit Slow Response (Bank 1 Sensor 1)", table.describe(0x0133));
+        assertNull(table.describe(Dtc.parse("P0001")));
+    }
+}
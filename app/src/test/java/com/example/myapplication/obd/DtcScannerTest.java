@@ -0,0 +1,132 @@
+package com.example.myapplication.obd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DtcScannerTest {
+    
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private DtcScanner scanner;
+    private int header = 0x7DF;
+    
+    /** An engine ECU on 7E8 with P0133 stored and a transmission ECU on 7E9 with P0700 stored */
+    private void answer(String command) {
+        sent.add(command);
+        if (command.startsWith("ATSH")) {
+            header = Integer.parseInt(command.substring(4), 16);
+        }
+        if (command.startsWith("AT")) {
+            scanner.onLine("OK");
+        } else if (!command.equals("03")) {
+            scanner.onLine("NO DATA");
+        } else if (header == 0x7E0) {
+            scanner.onMessage(0x7E8, new int[]{0x43, 0x01, 0x01, 0x33}, 4);
+        } else if (header == 0x7E1) {
+            scanner.onMessage(0x7E9, new int[]{0x43, 0x01, 0x07, 0x00}, 4);
+        } else {
+            scanner.onLine("NO DATA");
+        }
+    }
+    
+    @After
+    public void tearDown() {
+        scanner.shutdown();
+    }
+    
+    private DtcScanResult scan() throws InterruptedException {
+        DtcScanResult[] result = new DtcScanResult[1];
+        CountDownLatch done = new CountDownLatch(1);
+        scanner.scan((scanResult, changes) -> {
+            result[0] = scanResult;
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return result[0];
+    }
+    
+    @Test
+    public void everyKnownEcuIsAsked() throws InterruptedException {
+        scanner = new DtcScanner(this::answer);
+        scanner.setEcuHeaders(new int[]{0x7E8, 0x7E9});
+        DtcScanResult result = scan();
+        
+        assertEquals(Set.of(0x0133, 0x0700), result.codes(Dtc.MODE_STORED));
+        assertTrue(sent.contains("ATSH7E0"));
+        assertTrue(sent.contains("ATSH7E1"));
+        // Headers off and the functional header again for the line by line decoders
+        assertEquals(List.of("ATH0", "ATSH7DF"), sent.subList(sent.size() - 2, sent.size()));
+    }
+    
+    @Test
+    public void hungEcuMakesTheScanPartial() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        scanner = new DtcScanner(command -> {
+            if (header == 0x7E1 && command.equals("07")) {
+                // The adapter never comes back from this request
+                sent.add(command);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                answer(command);
+            }
+        });
+        scanner.setEcuHeaders(new int[]{0x7E8, 0x7E9});
+        scanner.setEcuRequestBudgetMillis(100);
+        try {
+            DtcScanResult result = scan();
+            
+            assertTrue(result.isPartial());
+            assertEquals(Set.of(0x0133, 0x0700), result.codes(Dtc.MODE_STORED));
+            assertEquals(List.of("ATH0", "ATSH7DF"), sent.subList(sent.size() - 2, sent.size()));
+        } finally {
+            release.countDown();
+        }
+    }
+    
+    @Test
+    public void partialScanDoesNotClearCodes() throws InterruptedException {
+        boolean[] hang = { false };
+        CountDownLatch release = new CountDownLatch(1);
+        scanner = new DtcScanner(command -> {
+            if (hang[0] && header == 0x7E0 && command.equals("03")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                answer(command);
+            }
+        });
+        scanner.setEcuHeaders(new int[]{0x7E8, 0x7E9});
+        scanner.setEcuRequestBudgetMillis(100);
+        scan();
+        hang[0] = true;
+        
+        List<DtcScanResult.Change> changes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        scanner.scan((result, scanChanges) -> {
+            changes.addAll(scanChanges);
+            done.countDown();
+        });
+        try {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            // P0133 wasn't read this time, that doesn't mean it was cleared
+            assertTrue(changes.isEmpty());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.myapplication.obd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EcuMultiplexerTest {
+    
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private EcuMultiplexer multiplexer;
+    private int header = 0x7DF;
+    
+    /** Answers like an engine ECU on 7E8 and a transmission ECU on 7E9; 7E2 never answers */
+    private void answer(String command) {
+        sent.add(command);
+        if (command.startsWith("AT")) {
+            if (command.startsWith("ATSH")) header = Integer.parseInt(command.substring(4), 16);
+            multiplexer.onLine("OK");
+        } else if (header == 0x7DF) {
+            multiplexer.onMessage(0x7E8, new int[]{0x41, 0x00, 0xBE}, 3);
+            multiplexer.onMessage(0x7E9, new int[]{0x41, 0x00, 0x80}, 3);
+        } else if (header == 0x7E0 || header == 0x7E1) {
+            multiplexer.onMessage(header + 8, new int[]{0x41, header & 0xF}, 2);
+        } else {
+            multiplexer.onLine("NO DATA");
+        }
+    }
+    
+    @After
+    public void tearDown() {
+        multiplexer.shutdown();
+    }
+    
+    @Test
+    public void roundRobinAcrossChannels() throws InterruptedException {
+        multiplexer = new EcuMultiplexer(this::answer);
+        EcuMultiplexer.Channel engine = multiplexer.openChannel("engine", 0x7E0);
+        EcuMultiplexer.Channel transmission = multiplexer.openChannel("transmission", 0x7E1);
+        EcuMultiplexer.Channel abs = multiplexer.openChannel("abs", 0x7E2);
+        List<String> replies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(6);
+        EcuMultiplexer.ReplyListener listener = (channel, command, data, length) -> {
+            replies.add(channel.getName() + ":" + length);
+            done.countDown();
+        };
+        for (int i = 0; i < 3; i++) {
+            engine.submit("0100", listener);
+        }
+        transmission.submit("0100", listener);
+        abs.submit("0100", listener);
+        transmission.submit("0100", listener);
+        multiplexer.start();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("engine:2", "transmission:2", "abs:0", "engine:2", "transmission:2", "engine:2"),
+            replies);
+        assertEquals("ATH1", sent.get(0));
+        assertEquals("ATSH7E0", sent.get(1));
+    }
+    
+    @Test
+    public void broadcastRoutesByResponseHeader() throws InterruptedException {
+        multiplexer = new EcuMultiplexer(this::answer);
+        multiplexer.openChannel("engine", 0x7E0);
+        List<String> replies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        multiplexer.broadcast("0100", (channel, command, data, length) -> {
+            replies.add(channel.getName() + ":" + Integer.toHexString(data[2]));
+            done.countDown();
+        });
+        multiplexer.start();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("engine:be", "broadcast:80"), replies);
+    }
+    
+    @Test
+    public void finishRestoresAdapterDefaults() throws InterruptedException {
+        multiplexer = new EcuMultiplexer(this::answer);
+        EcuMultiplexer.Channel engine = multiplexer.openChannel("engine", 0x7E0);
+        List<Integer> lengths = Collections.synchronizedList(new ArrayList<>());
+        engine.submit("0100", (channel, command, data, length) -> lengths.add(length));
+        CountDownLatch finished = new CountDownLatch(1);
+        multiplexer.start();
+        multiplexer.finish(finished::countDown);
+        
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(2), lengths);
+        assertEquals(List.of("ATH1", "ATSH7E0", "0100", "ATH0", "ATSH7DF"), sent);
+    }
+    
+    @Test
+    public void messagesWithoutHeaderAreNotTakenAsAnEcusReply() throws InterruptedException {
+        multiplexer = new EcuMultiplexer(command -> {
+            sent.add(command);
+            if (command.startsWith("AT")) {
+                multiplexer.onLine("OK");
+            } else {
+                multiplexer.onMessage(IsoTpReassembler.NO_HEADER, new int[]{0x41, 0x00}, 2);
+                multiplexer.onLine("NO DATA");
+            }
+        });
+        EcuMultiplexer.Channel abs = multiplexer.openChannel("abs", 0x7E2);
+        int[] replyLength = { -1 };
+        CountDownLatch done = new CountDownLatch(1);
+        abs.submit("0100", (channel, command, data, length) -> {
+            replyLength[0] = length;
+            done.countDown();
+        });
+        multiplexer.start();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, replyLength[0]);
+    }
+    
+    @Test
+    public void extendedHeaderIsSetWithPriorityAndThreeBytes() throws InterruptedException {
+        multiplexer = new EcuMultiplexer(this::answer);
+        EcuMultiplexer.Channel engine = multiplexer.openChannel("engine", 0x18DA10F1);
+        EcuMultiplexer.Channel transmission = multiplexer.openChannel("transmission", 0x18DA18F1);
+        CountDownLatch done = new CountDownLatch(2);
+        engine.submit("0100", (channel, command, data, length) -> done.countDown());
+        transmission.submit("0100", (channel, command, data, length) -> done.countDown());
+        multiplexer.start();
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // Pre-2.1 adapters reject a four byte ATSH, the priority goes once through ATCP
+        assertEquals(List.of("ATH1", "ATCP18", "ATSHDA10F1", "0100", "ATSHDA18F1", "0100"), sent);
+    }
+    
+    @Test
+    public void extendedResponseHeader() {
+        multiplexer = new EcuMultiplexer(this::answer);
+        assertEquals(0x18DAF110, multiplexer.openChannel("engine", 0x18DA10F1).getResponseHeader());
+        assertEquals(0x7E8, multiplexer.openChannel("engine", 0x7E0).getResponseHeader());
+        assertEquals(0x18DA10F1, EcuMultiplexer.requestHeaderFor(0x18DAF110));
+        assertEquals(0x7E1, EcuMultiplexer.requestHeaderFor(0x7E9));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.myapplication.obd;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IsoTpReassemblerTest {
+    
+    private final IsoTpReassembler reassembler = new IsoTpReassembler(4, 1000);
+    private final List<String> messages = new ArrayList<>();
+    
+    private void feed(long time, String... lines) {
+        for (String line : lines) {
+            reassembler.feed(line, time, (header, data, length) -> {
+                StringBuilder sb = new StringBuilder(header == IsoTpReassembler.NO_HEADER
+                    ? "-" : Integer.toHexString(header).toUpperCase());
+                sb.append(':');
+                for (int i = 0; i < length; i++) {
+                    sb.append(String.format(" %02X", data[i]));
+                }
+                messages.add(sb.toString());
+            });
+        }
+    }
+    
+    @Test
+    public void singleFramesWithAndWithoutHeaders() {
+        feed(0, "7E8 04 41 0C 1A F8 AA AA", "41 0D 32", "7E80341053C");
+        assertEquals(List.of("7E8: 41 0C 1A F8", "-: 41 0D 32", "7E8: 41 05 3C"), messages);
+    }
+    
+    @Test
+    public void vinFromInterleavedEcus() {
+        feed(0,
+            "7E8 10 14 49 02 01 31 47 31",
+            "7E9 10 14 49 02 01 57 56 57",
+            "7E8 21 4A 43 35 34 34 34 52",
+            "7E9 21 5A 5A 5A 31 4A 5A 33",
+            "7E8 22 37 32 35 30 31 36 38",
+            "7E9 22 41 57 30 31 32 33 34");
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0), messages.get(0).startsWith("7E8: 49 02 01 31 47 31 4A"));
+        assertTrue(messages.get(1), messages.get(1).startsWith("7E9: 49 02 01 57 56 57 5A"));
+        // 0x14 = 20 bytes: 49 02 01 and the 17 character VIN
+        assertEquals(4 + 20 * 3, messages.get(0).length());
+    }
+    
+    @Test
+    public void headersOffNumberedLines() {
+        feed(0, "014", "0: 49 02 01 31 47 31", "1: 4A 43 35 34 34 34 52", "2: 37 32 35 30 31 36 38");
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0).startsWith("-: 49 02 01 31 47 31 4A 43"));
+    }
+    
+    @Test
+    public void missingFrameDropsSequence() {
+        feed(0, "7E8 10 14 49 02 01 31 47 31", "7E8 22 37 32 35 30 31 36 38");
+        assertTrue(messages.isEmpty());
+        assertEquals(1, reassembler.droppedCount());
+        assertEquals(0, reassembler.pendingCount());
+    }
+    
+    @Test
+    public void stalledSequenceTimesOut() {
+        feed(0, "7E8 10 14 49 02 01 31 47 31");
+        assertEquals(1, reassembler.pendingCount());
+        feed(1500, "7E8 21 4A 43 35 34 34 34 52");
+        assertTrue(messages.isEmpty());
+        assertEquals(1, reassembler.droppedCount());
+    }
+    
+    /**
+     * Frames of one ISO-TP message as the ELM327 prints them with headers on
+     */
+    private static List<String> toFrames(int header, int[] payload, boolean spaced, boolean padded) {
+        List<List<Integer>> frames = new ArrayList<>();
+        if (payload.length <= 7) {
+            List<Integer> frame = new ArrayList<>();
+            frame.add(payload.length);
+            for (int b : payload) frame.add(b);
+            frames.add(frame);
+        } else {
+            List<Integer> first = new ArrayList<>();
+            first.add(0x10 | (payload.length >> 8));
+            first.add(payload.length & 0xFF);
+            for (int i = 0; i < 6; i++) first.add(payload[i]);
+            frames.add(first);
+            int sequence = 1;
+            for (int i = 6; i < payload.length; i += 7) {
+                List<Integer> next = new ArrayList<>();
+                next.add(0x20 | sequence);
+                for (int j = i; j < Math.min(i + 7, payload.length); j++) next.add(payload[j]);
+                frames.add(next);
+                sequence = (sequence + 1) & 0x0F;
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        for (List<Integer> frame : frames) {
+            while (padded && frame.size() < 8) frame.add(0xAA);
+            StringBuilder line = new StringBuilder(String.format(Locale.US, "%03X", header));
+            for (int b : frame) {
+                if (spaced) line.append(' ');
+                line.append(String.format(Locale.US, "%02X", b));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+    
+    @Test
+    public void randomInterleavedMessagesAreRebuilt() {
+        int[] headers = { 0x7E8, 0x7E9, 0x7EA };
+        for (int trial = 0; trial < 500; trial++) {
+            Random random = new Random(trial);
+            IsoTpReassembler reassembler = new IsoTpReassembler(4, 1000);
+            Map<Integer, int[]> sent = new HashMap<>();
+            List<List<String>> queues = new ArrayList<>();
+            for (int header : headers) {
+                int[] payload = new int[1 + random.nextInt(300)];
+                for (int i = 0; i < payload.length; i++) payload[i] = random.nextInt(256);
+                sent.put(header, payload);
+                queues.add(new ArrayList<>(toFrames(header, payload, random.nextBoolean(), random.nextBoolean())));
+            }
+            
+            Map<Integer, int[]> received = new HashMap<>();
+            while (!queues.isEmpty()) {
+                // Any interleaving that keeps each ECU's frames in order
+                List<String> queue = queues.get(random.nextInt(queues.size()));
+                reassembler.feed(queue.remove(0), 0,
+                    (header, data, length) -> received.put(header, Arrays.copyOf(data, length)));
+                if (queue.isEmpty()) queues.remove(queue);
+            }
+            
+            for (int header : headers) {
+                assertArrayEquals("seed " + trial + " header " + Integer.toHexString(header),
+                    sent.get(header), received.get(header));
+            }
+            assertEquals("seed " + trial, 0, reassembler.droppedCount());
+            assertEquals("seed " + trial, 0, reassembler.pendingCount());
+        }
+    }
+}
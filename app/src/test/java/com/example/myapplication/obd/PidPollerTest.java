@@ -0,0 +1,198 @@
+package com.example.myapplication.obd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PidPollerTest {
+    
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final PidPoller poller = new PidPoller(this::answer);
+    
+    /** Answers RPM, speed and coolant temperature; other PIDs are left out of the reply */
+    private void answer(String command) {
+        sent.add(command);
+        int[] data = new int[16];
+        int length = 0;
+        data[length++] = PidParser.MODE_01_RESPONSE;
+        for (int i = 2; i + 1 < command.length(); i += 2) {
+            int pid = Integer.parseInt(command.substring(i, i + 2), 16);
+            if (pid == ObdPid.ENGINE_RPM) {
+                data[length++] = pid;
+                data[length++] = 0x0C;
+                data[length++] = 0x80;
+            } else if (pid == ObdPid.VEHICLE_SPEED || pid == ObdPid.COOLANT_TEMP) {
+                data[length++] = pid;
+                data[length++] = 0x50;
+            }
+        }
+        if (length == 1) {
+            poller.onLine("NO DATA");
+            return;
+        }
+        poller.onMessage(0x7E8, data, length);
+        PidParser.parsePayload(data, 1, length - 1, System.currentTimeMillis(), poller);
+    }
+    
+    @After
+    public void tearDown() {
+        poller.shutdown();
+    }
+    
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (poller.getRequestCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Only " + poller.getRequestCount() + " requests", poller.getRequestCount() >= count);
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Test
+    public void duePidsShareOneRequest() throws InterruptedException {
+        poller.setMultiPidRequests(true);
+        poller.setPids(ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED, ObdPid.COOLANT_TEMP);
+        poller.start();
+        poller.resume();
+        awaitRequests(1);
+        
+        assertEquals("010C0D05", sent.get(0));
+    }
+    
+    @Test
+    public void unansweredPidsAreDropped() throws InterruptedException {
+        poller.setMultiPidRequests(true);
+        poller.setPids(ObdPid.ENGINE_RPM, ObdPid.OIL_TEMP);
+        poller.start();
+        poller.resume();
+        awaitRequests(5);
+        
+        assertEquals("010C5C", sent.get(0));
+        assertEquals("010C", sent.get(sent.size() - 1));
+        assertEquals(0, poller.getInterval(ObdPid.OIL_TEMP));
+        assertEquals(PidPoller.BASE_INTERVAL_MS, poller.getInterval(ObdPid.ENGINE_RPM));
+    }
+    
+    @Test
+    public void onePidPerRequestUnlessEnabled() throws InterruptedException {
+        poller.setPids(ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED);
+        poller.start();
+        poller.resume();
+        awaitRequests(2);
+        
+        assertEquals(List.of("010C", "010D"), sent.subList(0, 2));
+    }
+    
+    @Test
+    public void pidFromASecondEcuIsNotAMiss() throws InterruptedException {
+        // The engine ECU answers RPM, the transmission ECU answers oil temperature
+        PidPoller[] pollers = new PidPoller[1];
+        PidPoller twoEcus = new PidPoller(command -> {
+            sent.add(command);
+            new Thread(() -> {
+                sleep(5);
+                PidPoller target = pollers[0];
+                target.onMessage(0x7E8, new int[]{PidParser.MODE_01_RESPONSE, ObdPid.ENGINE_RPM, 0x0C, 0x80}, 4);
+                sleep(20);
+                target.onMessage(0x7E9, new int[]{PidParser.MODE_01_RESPONSE, ObdPid.OIL_TEMP, 0x80}, 3);
+            }).start();
+        });
+        pollers[0] = twoEcus;
+        try {
+            twoEcus.setMultiPidRequests(true);
+            twoEcus.setPids(ObdPid.ENGINE_RPM, ObdPid.OIL_TEMP);
+            twoEcus.start();
+            twoEcus.resume();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (twoEcus.getRequestCount() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            
+            assertTrue(twoEcus.getRequestCount() >= 5);
+            assertArrayEquals(new int[]{ObdPid.ENGINE_RPM, ObdPid.OIL_TEMP}, twoEcus.getActivePids());
+        } finally {
+            twoEcus.shutdown();
+        }
+    }
+    
+    @Test
+    public void pauseWaitsForTheReplyOnTheWire() throws InterruptedException {
+        long[] repliedAt = { 0 };
+        PidPoller[] target = new PidPoller[1];
+        PidPoller delayed = new PidPoller(command -> new Thread(() -> {
+            // The ECU takes a while, the reply is still coming when pause is called
+            sleep(200);
+            synchronized (repliedAt) {
+                repliedAt[0] = System.currentTimeMillis();
+            }
+            target[0].onLine("NO DATA");
+        }).start());
+        target[0] = delayed;
+        try {
+            delayed.setPids(ObdPid.ENGINE_RPM);
+            delayed.start();
+            delayed.resume();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (delayed.getRequestCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            delayed.pause();
+            
+            synchronized (repliedAt) {
+                assertTrue("pause returned before the reply", repliedAt[0] > 0);
+            }
+        } finally {
+            delayed.shutdown();
+        }
+    }
+    
+    @Test
+    public void stableSignalsBackOffInPowerSaving() {
+        poller.setPids(ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED, ObdPid.COOLANT_TEMP);
+        poller.setCriticalPids(ObdPid.COOLANT_TEMP);
+        poller.setPowerSaving(true);
+        for (int i = 0; i < 40; i++) {
+            poller.onSample(ObdPid.ENGINE_RPM, i * 100, 800 + (i % 2));
+            poller.onSample(ObdPid.VEHICLE_SPEED, i * 100, 50);
+            poller.onSample(ObdPid.COOLANT_TEMP, i * 100, 90);
+        }
+        
+        assertEquals(PidPoller.MAX_INTERVAL_MS, poller.getInterval(ObdPid.ENGINE_RPM));
+        assertEquals(PidPoller.MAX_INTERVAL_MS, poller.getInterval(ObdPid.VEHICLE_SPEED));
+        assertEquals(PidPoller.CRITICAL_MAX_INTERVAL_MS, poller.getInterval(ObdPid.COOLANT_TEMP));
+        
+        // Moving again
+        poller.onSample(ObdPid.VEHICLE_SPEED, 4000, 60);
+        assertEquals(PidPoller.BASE_INTERVAL_MS, poller.getInterval(ObdPid.VEHICLE_SPEED));
+        assertEquals(PidPoller.MAX_INTERVAL_MS, poller.getInterval(ObdPid.ENGINE_RPM));
+    }
+    
+    @Test
+    public void engineOffSlowsEverythingButCriticalPids() {
+        poller.setPids(ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED, ObdPid.COOLANT_TEMP);
+        poller.setCriticalPids(ObdPid.COOLANT_TEMP);
+        poller.onSample(ObdPid.ENGINE_RPM, 0, 0);
+        // Outside power saving the rate doesn't change
+        assertEquals(PidPoller.BASE_INTERVAL_MS, poller.getInterval(ObdPid.VEHICLE_SPEED));
+        
+        poller.setPowerSaving(true);
+        assertEquals(PidPoller.MAX_INTERVAL_MS, poller.getInterval(ObdPid.VEHICLE_SPEED));
+        assertEquals(PidPoller.CRITICAL_MAX_INTERVAL_MS, poller.getInterval(ObdPid.COOLANT_TEMP));
+        
+        poller.onSample(ObdPid.ENGINE_RPM, 100, 750);
+        assertEquals(PidPoller.BASE_INTERVAL_MS, poller.getInterval(ObdPid.VEHICLE_SPEED));
+        assertEquals(PidPoller.BASE_INTERVAL_MS, poller.getInterval(ObdPid.COOLANT_TEMP));
+    }
+}
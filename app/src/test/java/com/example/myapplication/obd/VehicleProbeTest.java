@@ -0,0 +1,211 @@
+package com.example.myapplication.obd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VehicleProbeTest {
+    
+    private static final String VIN = "WVWZZZ1KZAW000001";
+    
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, VehicleProfile> stored = new HashMap<>();
+    private final VehicleProbe.ProfileCache cache = new VehicleProbe.ProfileCache() {
+        @Override
+        public VehicleProfile load(String vin) {
+            return stored.get(vin);
+        }
+        
+        @Override
+        public void save(VehicleProfile profile) {
+            stored.put(profile.vin, profile);
+        }
+    };
+    private VehicleProbe probe;
+    private String protocol = "A6";
+    
+    /** An ELM327 on 11-bit CAN with an engine ECU on 7E8 and a transmission ECU on 7E9 */
+    private void answer(String command) {
+        sent.add(command);
+        switch (command) {
+            case "ATI":
+                probe.onLine("ATI");
+                probe.onLine("ELM327 v1.5");
+                return;
+            case "ATDPN":
+                probe.onLine(protocol);
+                return;
+            case "0902":
+                int[] vin = new int[3 + VIN.length()];
+                vin[0] = 0x49;
+                vin[1] = 0x02;
+                vin[2] = 0x01;
+                for (int i = 0; i < VIN.length(); i++) {
+                    vin[3 + i] = VIN.charAt(i);
+                }
+                probe.onMessage(0x7E8, vin, vin.length);
+                return;
+            case "0100":
+                probe.onMessage(0x7E8, new int[]{0x41, 0x00, 0xBE, 0x1F, 0xA8, 0x13}, 6);
+                probe.onMessage(0x7E9, new int[]{0x41, 0x00, 0x80, 0x00, 0x00, 0x00}, 6);
+                return;
+            case "0120":
+                probe.onMessage(0x7E8, new int[]{0x41, 0x20, 0x80, 0x02, 0x00, 0x01}, 6);
+                return;
+            case "0140":
+                probe.onMessage(0x7E8, new int[]{0x41, 0x40, 0x40, 0x00, 0x00, 0x00}, 6);
+                return;
+            default:
+                probe.onLine(command.startsWith("AT") ? "OK" : "NO DATA");
+        }
+    }
+    
+    @After
+    public void tearDown() {
+        probe.shutdown();
+    }
+    
+    private VehicleProfile runProbe(boolean[] fromCache) throws InterruptedException {
+        VehicleProfile[] result = new VehicleProfile[1];
+        CountDownLatch done = new CountDownLatch(1);
+        probe.probe(new int[]{ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED, ObdPid.FUEL_LEVEL,
+            ObdPid.CONTROL_MODULE_VOLTAGE, ObdPid.OIL_TEMP}, (profile, cached) -> {
+                result[0] = profile;
+                fromCache[0] = cached;
+                done.countDown();
+            });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result[0];
+    }
+    
+    @Test
+    public void discoversSupportedPidsAndCachesThem() throws InterruptedException {
+        probe = new VehicleProbe(this::answer, cache);
+        boolean[] fromCache = new boolean[1];
+        VehicleProfile profile = runProbe(fromCache);
+        
+        assertFalse(fromCache[0]);
+        assertEquals(VIN, profile.vin);
+        assertEquals("ELM327 v1.5/6", profile.fingerprint);
+        assertTrue(profile.isSupported(ObdPid.ENGINE_RPM));
+        assertTrue(profile.isSupported(ObdPid.COOLANT_TEMP));
+        assertFalse(profile.isSupported(0x02));
+        assertTrue(profile.isSupported(ObdPid.FUEL_LEVEL));
+        assertTrue(profile.isSupported(ObdPid.CONTROL_MODULE_VOLTAGE));
+        assertFalse(profile.isSupported(ObdPid.OIL_TEMP));
+        assertArrayEquals(new int[]{0x7E8, 0x7E9}, profile.getEcuHeaders());
+        assertArrayEquals(new int[]{ObdPid.ENGINE_RPM, ObdPid.VEHICLE_SPEED, ObdPid.FUEL_LEVEL,
+            ObdPid.CONTROL_MODULE_VOLTAGE}, profile.getPollPids());
+        // 0140 doesn't announce 0160
+        assertFalse(sent.contains("0160"));
+        // Headers only for the bitmaps, off again for everything after
+        assertEquals(sent.indexOf("0100") - 1, sent.indexOf("ATH1"));
+        assertEquals("ATH0", sent.get(sent.size() - 1));
+        assertSame(profile, stored.get(VIN));
+    }
+    
+    @Test
+    public void returningCarSkipsDiscovery() throws InterruptedException {
+        probe = new VehicleProbe(this::answer, cache);
+        runProbe(new boolean[1]);
+        sent.clear();
+        
+        boolean[] fromCache = new boolean[1];
+        VehicleProfile profile = runProbe(fromCache);
+        
+        assertTrue(fromCache[0]);
+        assertEquals(VIN, profile.vin);
+        assertEquals(List.of("ATI", "0902", "ATDPN"), sent);
+    }
+    
+    @Test
+    public void legacyProtocolKeepsHeadersOff() throws InterruptedException {
+        protocol = "A3";
+        probe = new VehicleProbe(this::answer, cache);
+        VehicleProfile profile = runProbe(new boolean[1]);
+        
+        assertFalse(sent.contains("ATH1"));
+        assertFalse(sent.contains("ATH0"));
+        assertTrue(profile.isSupported(ObdPid.ENGINE_RPM));
+    }
+    
+    @Test
+    public void faultCodesStillDecodeAfterAProbe() throws InterruptedException {
+        // An adapter on 11-bit CAN whose reply format follows ATH0/ATH1
+        boolean[] headersOn = new boolean[1];
+        IsoTpReassembler reassembler = new IsoTpReassembler();
+        DtcScanner[] scanner = new DtcScanner[1];
+        VehicleProbe.CommandSender adapter = command -> {
+            sent.add(command);
+            List<String> lines = new ArrayList<>();
+            String prefix = headersOn[0] ? "7E8 06 " : "";
+            if (command.equals("ATH1") || command.equals("ATH0")) {
+                headersOn[0] = command.equals("ATH1");
+                lines.add("OK");
+            } else if (command.equals("ATI")) {
+                lines.add("ELM327 v1.5");
+            } else if (command.equals("ATDPN")) {
+                lines.add("A6");
+            } else if (command.equals("0100")) {
+                lines.add(prefix + "41 00 BE 1F A8 12");
+            } else if (command.equals("03")) {
+                lines.add(prefix + "43 02 01 33 02 44");
+            } else {
+                lines.add("NO DATA");
+            }
+            for (String line : lines) {
+                probe.onLine(line);
+                scanner[0].onLine(line);
+                reassembler.feed(line, System.currentTimeMillis(), (header, data, length) -> {
+                    probe.onMessage(header, data, length);
+                    scanner[0].onMessage(header, data, length);
+                });
+            }
+        };
+        probe = new VehicleProbe(adapter, cache);
+        scanner[0] = new DtcScanner(adapter::sendMessage);
+        try {
+            VehicleProfile profile = runProbe(new boolean[1]);
+            assertArrayEquals(new int[]{0x7E8}, profile.getEcuHeaders());
+            assertFalse(headersOn[0]);
+            
+            scanner[0].setEcuHeaders(profile.getEcuHeaders());
+            DtcScanResult[] result = new DtcScanResult[1];
+            CountDownLatch done = new CountDownLatch(1);
+            scanner[0].scan((scanResult, changes) -> {
+                result[0] = scanResult;
+                done.countDown();
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(Set.of(0x0133, 0x0244), result[0].codes(Dtc.MODE_STORED));
+        } finally {
+            scanner[0].shutdown();
+        }
+    }
+    
+    @Test
+    public void otherProtocolInvalidatesTheCachedProfile() throws InterruptedException {
+        probe = new VehicleProbe(this::answer, cache);
+        runProbe(new boolean[1]);
+        protocol = "A7";
+        sent.clear();
+        
+        boolean[] fromCache = new boolean[1];
+        VehicleProfile profile = runProbe(fromCache);
+        
+        assertFalse(fromCache[0]);
+        assertTrue(sent.contains("0100"));
+        assertEquals("ELM327 v1.5/7", stored.get(VIN).fingerprint);
+        assertSame(profile, stored.get(VIN));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myapplication.rules;
+
+import com.example.myapplication.obd.ObdPid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RuleEngineTest {
+    
+    private final List<String> events = new ArrayList<>();
+    
+    private RuleEngine engine(AnomalyRule... rules) {
+        return new RuleEngine(List.of(rules), new RuleEngine.AlertListener() {
+            @Override
+            public void onAlert(AnomalyRule rule, double value, long timestampMillis) {
+                events.add("alert " + rule.name + " " + timestampMillis);
+            }
+            
+            @Override
+            public void onAlertCleared(AnomalyRule rule, double value, long timestampMillis) {
+                events.add("cleared " + rule.name + " " + timestampMillis);
+            }
+        });
+    }
+    
+    @Test
+    public void thresholdFiresOnceUntilCleared() {
+        RuleEngine engine = engine(AnomalyRule.threshold("hot", ObdPid.COOLANT_TEMP, -40, 110));
+        engine.onSample(ObdPid.COOLANT_TEMP, 1, 100);
+        engine.onSample(ObdPid.COOLANT_TEMP, 2, 115);
+        engine.onSample(ObdPid.COOLANT_TEMP, 3, 118);
+        engine.onSample(ObdPid.ENGINE_RPM, 4, 9000);
+        engine.onSample(ObdPid.COOLANT_TEMP, 5, 105);
+        assertEquals(List.of("alert hot 2", "cleared hot 5"), events);
+    }
+    
+    @Test
+    public void rateOfChangeUsesElapsedTime() {
+        RuleEngine engine = engine(AnomalyRule.rateOfChange("jump", ObdPid.COOLANT_TEMP, 5, 1000));
+        engine.onSample(ObdPid.COOLANT_TEMP, 0, 80);
+        engine.onSample(ObdPid.COOLANT_TEMP, 2000, 88);
+        assertTrue(events.isEmpty());
+        // Within the span of the last reference sample
+        engine.onSample(ObdPid.COOLANT_TEMP, 2500, 92);
+        assertTrue(events.isEmpty());
+        engine.onSample(ObdPid.COOLANT_TEMP, 3000, 94);
+        assertEquals(List.of("alert jump 3000"), events);
+    }
+    
+    @Test
+    public void wholeDegreeStepsBetweenCloseSamplesAreNoJump() {
+        RuleEngine engine = engine(AnomalyRule.rateOfChange("jump", ObdPid.COOLANT_TEMP, 5, 2000));
+        // Warming up by 1 degree a second, polled every 150 ms
+        for (long t = 0; t < 60_000; t += 150) {
+            engine.onSample(ObdPid.COOLANT_TEMP, t, 20 + t / 1000);
+        }
+        assertTrue(events.isEmpty());
+    }
+    
+    @Test
+    public void windowMeanWaitsForFullWindow() {
+        RuleEngine engine = engine(AnomalyRule.windowMean("volts", ObdPid.CONTROL_MODULE_VOLTAGE, 4, 12, 15));
+        engine.onSample(ObdPid.CONTROL_MODULE_VOLTAGE, 1, 11);
+        engine.onSample(ObdPid.CONTROL_MODULE_VOLTAGE, 2, 11);
+        engine.onSample(ObdPid.CONTROL_MODULE_VOLTAGE, 3, 11);
+        assertTrue(events.isEmpty());
+        engine.onSample(ObdPid.CONTROL_MODULE_VOLTAGE, 4, 11);
+        assertEquals(List.of("alert volts 4"), events);
+        for (int t = 5; t < 9; t++) {
+            engine.onSample(ObdPid.CONTROL_MODULE_VOLTAGE, t, 14);
+        }
+        assertEquals(List.of("alert volts 4", "cleared volts 6"), events);
+    }
+    
+    @Test
+    public void deviationFromRecentSamples() {
+        RuleEngine engine = engine(AnomalyRule.deviation("spike", ObdPid.MAF_RATE, 10, 4));
+        for (int t = 0; t < 1000; t++) {
+            engine.onSample(ObdPid.MAF_RATE, t, 10 + (t % 2));
+        }
+        assertTrue(events.isEmpty());
+        engine.onSample(ObdPid.MAF_RATE, 1000, 40);
+        assertEquals(List.of("alert spike 1000"), events);
+    }
+    
+    @Test
+    public void resetForgetsState() {
+        RuleEngine engine = engine(AnomalyRule.threshold("hot", ObdPid.COOLANT_TEMP, -40, 110));
+        engine.onSample(ObdPid.COOLANT_TEMP, 1, 120);
+        engine.reset();
+        engine.onSample(ObdPid.COOLANT_TEMP, 2, 120);
+        assertEquals(List.of("alert hot 1", "alert hot 2"), events);
+    }
+    
+    @Test
+    public void defaultsCompile() {
+        assertEquals(AnomalyRule.defaults().size(), engine(AnomalyRule.defaults().toArray(new AnomalyRule[0])).ruleCount());
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.myapplication.standin;
+
+import com.example.myapplication.io.LineFramer;
+import com.example.myapplication.io.SocketTransport;
+import com.example.myapplication.io.Transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for the Python RFCOMM server. Speaks the same newline protocol and
+ * answers OBD-II requests the way an ELM327 adapter would, with configurable
+ * reply rate, latency, jitter and fragmentation.
+ *
+ * It can serve a {@link Transport} directly (e.g. a loopback in tests) or listen
+ * on a localhost TCP port: {@code java ... Elm327StandIn [port]}
+ */
+public class Elm327StandIn implements Closeable {
+    
+    public static class Config {
+        /** Maximum replies per second, 0 for unlimited */
+        public int maxRepliesPerSecond = 0;
+        /** Fixed delay before each reply */
+        public long latencyMicros = 0;
+        /** Random extra delay, uniformly distributed in [0, jitterMicros] */
+        public long jitterMicros = 0;
+        /** Write replies in chunks of this many bytes, 0 to write each reply at once */
+        public int fragmentSize = 0;
+        /** Terminate replies with "\r\r>" like an ELM327 instead of the server's "\n" */
+        public boolean elmFraming = false;
+        public long seed = 42;
+    }
+    
+    private final Config config;
+    private final Random random;
+    private final CopyOnWriteArrayList<Closeable> openResources = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+    private long requestCount = 0;
+    
+    public Elm327StandIn(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+    
+    /**
+     * Serve one connection on a background thread, closing it once the peer goes away
+     */
+    public Thread start(Transport transport) {
+        openResources.add(transport);
+        Thread thread = new Thread(() -> {
+            try {
+                serve(transport);
+            } catch (IOException ignored) {
+                // Peer went away
+            } finally {
+                openResources.remove(transport);
+                try {
+                    transport.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }, "elm327-standin");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+    
+    /**
+     * Accept connections on a localhost port, one serving thread per client
+     *
+     * @return the port actually bound, useful when passing 0
+     */
+    public int listen(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, 4, InetAddress.getLoopbackAddress());
+        openResources.add(serverSocket);
+        Thread acceptThread = new Thread(() -> {
+            while (!closed) {
+                try {
+                    Socket client = serverSocket.accept();
+                    client.setTcpNoDelay(true);
+                    start(new SocketTransport(client));
+                } catch (IOException e) {
+                    break;
+                }
+            }
+        }, "elm327-standin-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Connections being served right now
+     */
+    public int openConnections() {
+        int count = 0;
+        for (Closeable resource : openResources) {
+            if (resource instanceof Transport) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Answer requests until the transport closes
+     */
+    public void serve(Transport transport) throws IOException {
+        InputStream in = transport.getInputStream();
+        OutputStream out = transport.getOutputStream();
+        LineFramer framer = new LineFramer();
+        byte[] buffer = new byte[1024];
+        long minReplyIntervalNanos = config.maxRepliesPerSecond > 0
+            ? 1_000_000_000L / config.maxRepliesPerSecond : 0;
+        long[] nextReplyAt = { System.nanoTime() };
+        IOException[] failure = new IOException[1];
+        
+        LineFramer.LineListener handler = line -> {
+            if (failure[0] != null) return;
+            try {
+                delay();
+                if (minReplyIntervalNanos > 0) {
+                    sleepUntil(nextReplyAt[0]);
+                    nextReplyAt[0] = Math.max(nextReplyAt[0], System.nanoTime()) + minReplyIntervalNanos;
+                }
+                writeReply(out, respond(line));
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        };
+        
+        while (!closed) {
+            int n = in.read(buffer);
+            if (n == -1) break;
+            framer.feed(buffer, 0, n, handler);
+            if (failure[0] != null) throw failure[0];
+        }
+    }
+    
+    /**
+     * Build the reply for one request line
+     */
+    synchronized String respond(String request) {
+        String command = request.replace(" ", "").toUpperCase(Locale.US);
+        requestCount++;
+        
+        if (command.startsWith("AT")) {
+            if (command.equals("ATZ") || command.equals("ATI")) return "ELM327 v1.5";
+            if (command.equals("ATRV")) return "13.8V";
+            return "OK";
+        }
+        if (command.length() >= 4 && command.startsWith("01") && isHex(command)) {
+            StringBuilder reply = new StringBuilder("41");
+            for (int i = 2; i + 1 < command.length(); i += 2) {
+                int pid = Integer.parseInt(command.substring(i, i + 2), 16);
+                String data = pidData(pid);
+                if (data == null) continue;
+                reply.append(' ').append(String.format(Locale.US, "%02X", pid)).append(data);
+            }
+            return reply.length() > 2 ? reply.toString() : "NO DATA";
+        }
+        if (command.equals("03")) return "43 01 33 00 00 00 00";
+        return "?";
+    }
+    
+    /**
+     * Plausible, slowly varying values for the common PIDs
+     */
+    private String pidData(int pid) {
+        double t = requestCount / 50.0;
+        switch (pid) {
+            case 0x00: return " BE 3F A8 13";
+            case 0x20: return " 90 05 B0 15";
+            case 0x40: return " 7A DC 80 00";
+            case 0x05: return hex1(90 + 40);
+            case 0x0C: return hex2((int) ((1800 + 900 * Math.sin(t)) * 4));
+            case 0x0D: return hex1((int) (60 + 30 * Math.sin(t / 3)));
+            case 0x0F: return hex1(30 + 40);
+            case 0x10: return hex2((int) ((12 + 6 * Math.sin(t)) * 100));
+            case 0x11: return hex1((int) ((30 + 20 * Math.sin(t)) * 255 / 100));
+            case 0x2F: return hex1(180);
+            case 0x42: return hex2(13_800);
+            default: return null;
+        }
+    }
+    
+    private void writeReply(OutputStream out, String reply) throws IOException {
+        String terminated = config.elmFraming ? reply + "\r\r>" : reply + "\n";
+        byte[] bytes = terminated.getBytes(StandardCharsets.US_ASCII);
+        if (config.fragmentSize <= 0) {
+            out.write(bytes);
+            out.flush();
+            return;
+        }
+        for (int offset = 0; offset < bytes.length; offset += config.fragmentSize) {
+            out.write(bytes, offset, Math.min(config.fragmentSize, bytes.length - offset));
+            out.flush();
+        }
+    }
+    
+    private void delay() {
+        long micros = config.latencyMicros;
+        if (config.jitterMicros > 0) {
+            micros += (long) (random.nextDouble() * config.jitterMicros);
+        }
+        if (micros > 0) {
+            sleepUntil(System.nanoTime() + micros * 1000);
+        }
+    }
+    
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+    
+    private static String hex1(int value) {
+        return String.format(Locale.US, " %02X", value & 0xFF);
+    }
+    
+    private static String hex2(int value) {
+        return String.format(Locale.US, " %02X %02X", (value >> 8) & 0xFF, value & 0xFF);
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        for (Closeable resource : openResources) {
+            try {
+                resource.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        config.elmFraming = true;
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 35000;
+        Elm327StandIn server = new Elm327StandIn(config);
+        System.out.println("ELM327 stand-in listening on 127.0.0.1:" + server.listen(port));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.myapplication.ui.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.example.myapplication.io.LoopbackTransport;
+import com.example.myapplication.obd.ObdPid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link BluetoothConnectionService} over a loopback transport: fragmented
+ * reads, floods of lines and disconnects racing the reader and writer.
+ */
+public class BluetoothConnectionServiceTest {
+    
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+    private final AtomicInteger posts = new AtomicInteger();
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private int threadsBefore;
+    private BluetoothConnectionService service;
+    
+    @Before
+    public void setUp() {
+        threadsBefore = countThreads("bt-");
+        // Callbacks run inline, counting each post the main thread would get
+        service = new BluetoothConnectionService(null, runnable -> {
+            posts.incrementAndGet();
+            runnable.run();
+        });
+        service.setConnectionListener(new BluetoothConnectionService.ConnectionListener() {
+            @Override public void onConnected(BluetoothDevice device) { }
+            @Override public void onConnectionFailed(String error) { }
+            @Override public void onMessageSent(String message) { }
+            
+            @Override
+            public void onDisconnected() {
+                disconnects.incrementAndGet();
+            }
+            
+            @Override
+            public void onMessageReceived(String message) {
+                received.add(message);
+            }
+        });
+    }
+    
+    @After
+    public void tearDown() throws InterruptedException {
+        service.destroy();
+        awaitThreads("bt-", threadsBefore);
+    }
+    
+    static int countThreads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(prefix)) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Wait for threads with the prefix to go back to at most the expected count
+     */
+    static void awaitThreads(String prefix, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countThreads(prefix) > expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Leaked " + prefix + " threads", countThreads(prefix) <= expected);
+    }
+    
+    private void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, received.size());
+    }
+    
+    private static void writeFragmented(OutputStream out, byte[] data, Random random, int maxFragment)
+            throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            int count = Math.min(data.length - offset, 1 + random.nextInt(maxFragment));
+            out.write(data, offset, count);
+            offset += count;
+        }
+    }
+    
+    @Test
+    public void fragmentedRepliesArriveWholeAndInOrder() throws Exception {
+        Random random = new Random(7);
+        LoopbackTransport transport = new LoopbackTransport();
+        List<Double> rpm = Collections.synchronizedList(new ArrayList<>());
+        service.addSampleSink((pid, timestampMillis, value) -> {
+            if (pid == ObdPid.ENGINE_RPM) rpm.add(value);
+        });
+        service.attach(transport, null);
+        
+        List<String> expected = new ArrayList<>();
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            String line = String.format(Locale.US, "41 0C %02X %02X", random.nextInt(256), random.nextInt(256));
+            expected.add(line);
+            stream.append(line).append(random.nextBoolean() ? "\r" : "\r\r>");
+        }
+        writeFragmented(transport.peer().getOutputStream(),
+            stream.toString().getBytes(StandardCharsets.US_ASCII), random, 17);
+        
+        awaitReceived(expected.size());
+        assertEquals(expected, received);
+        assertEquals(expected.size(), rpm.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String[] bytes = expected.get(i).split(" ");
+            double value = (Integer.parseInt(bytes[2], 16) * 256 + Integer.parseInt(bytes[3], 16)) / 4.0;
+            assertEquals(value, rpm.get(i), 0.0);
+        }
+    }
+    
+    @Test
+    public void floodOfLinesIsPostedInBatches() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        service.attach(transport, null);
+        int postsBefore = posts.get();
+        
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            stream.append(String.format(Locale.US, "41 0D %02X\r", i & 0xFF));
+        }
+        transport.peer().getOutputStream().write(stream.toString().getBytes(StandardCharsets.US_ASCII));
+        
+        awaitReceived(20_000);
+        int deliveryPosts = posts.get() - postsBefore;
+        assertTrue(deliveryPosts + " posts", deliveryPosts <= 20_000 / 10);
+    }
+    
+    @Test
+    public void slowUiDeliveryHoldsABoundedBacklog() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        service.setUiDeliveryIntervalMillis(60_000);
+        service.attach(transport, null);
+        OutputStream out = transport.peer().getOutputStream();
+        out.write("first\r".getBytes(StandardCharsets.US_ASCII));
+        awaitReceived(1);
+        
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            stream.append("line ").append(i).append('\r');
+        }
+        stream.append("last\r");
+        byte[] data = stream.toString().getBytes(StandardCharsets.US_ASCII);
+        // Byte sinks run after the read's lines were delivered or held
+        CountDownLatch allRead = new CountDownLatch(1);
+        AtomicInteger bytesRead = new AtomicInteger();
+        service.addByteSink((buffer, offset, length) -> {
+            if (bytesRead.addAndGet(length) == data.length) allRead.countDown();
+        });
+        out.write(data);
+        assertTrue(allRead.await(5, TimeUnit.SECONDS));
+        assertEquals(1, received.size());
+        
+        service.setUiDeliveryIntervalMillis(0);
+        assertTrue(received.size() + " lines", received.size() <= 1 + 500);
+        assertEquals("last", received.get(received.size() - 1));
+    }
+    
+    @Test
+    public void concurrentDisconnectsWhileBusy() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            LoopbackTransport transport = new LoopbackTransport();
+            service.attach(transport, null);
+            // The far end talks until the link goes away
+            Thread talker = new Thread(() -> {
+                byte[] line = "41 0C 1A F8\r".getBytes(StandardCharsets.US_ASCII);
+                try {
+                    while (true) transport.peer().getOutputStream().write(line);
+                } catch (IOException e) {
+                    // Closed by a disconnect
+                }
+            });
+            talker.start();
+            Thread sender = new Thread(() -> {
+                while (service.isConnected()) service.sendMessage("010C");
+            });
+            sender.start();
+            
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> closers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread closer = new Thread(() -> {
+                    try {
+                        go.await();
+                        service.disconnect();
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                });
+                closer.start();
+                closers.add(closer);
+            }
+            Thread.sleep(2);
+            go.countDown();
+            for (Thread closer : closers) closer.join(5000);
+            talker.join(5000);
+            sender.join(5000);
+            
+            assertTrue("round " + round + ": " + failures, failures.isEmpty());
+            assertFalse(service.isConnected());
+            assertFalse(transport.isOpen());
+            assertFalse(talker.isAlive());
+            assertFalse(sender.isAlive());
+        }
+        assertTrue(disconnects.get() >= 50);
+    }
+}
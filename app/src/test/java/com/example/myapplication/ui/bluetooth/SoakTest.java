@@ -0,0 +1,107 @@
+package com.example.myapplication.ui.bluetooth;
+
+import com.example.myapplication.io.SocketTransport;
+import com.example.myapplication.standin.Elm327StandIn;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Repeated connect, stream and destroy cycles against the ELM327 stand-in,
+ * checking that nothing accumulates: every request is answered, threads go
+ * back to where they started and the heap doesn't keep growing. Every third
+ * cycle runs over a localhost socket instead of a loopback, and checks that
+ * both ends of it are closed once the service is destroyed.
+ *
+ * By default this is a few seconds of smoke test. For a real soak pass the
+ * duration in minutes, e.g. {@code ./gradlew test -PsoakMinutes=180}.
+ */
+public class SoakTest {
+    
+    private static final long SMOKE_MILLIS = 3000;
+    private static final long CYCLE_MILLIS = 250;
+    private static final long MAX_HEAP_GROWTH_BYTES = 32L << 20;
+    
+    private static Elm327StandIn.Config config(int cycle) {
+        Elm327StandIn.Config config = new Elm327StandIn.Config();
+        config.seed = cycle;
+        // Alternate between a fast link and an ELM-like one that fragments replies
+        if (cycle % 2 == 1) {
+            config.elmFraming = true;
+            config.fragmentSize = 1 + cycle % 7;
+            config.latencyMicros = 500;
+            config.jitterMicros = 500;
+        }
+        return config;
+    }
+    
+    /**
+     * One cycle over a real socket to the stand-in's listening port
+     */
+    private static ThroughputHarness.Result socketCycle(Elm327StandIn.Config config, int window)
+            throws Exception {
+        try (Elm327StandIn server = new Elm327StandIn(config)) {
+            int port = server.listen(0);
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            SocketTransport transport = new SocketTransport(socket);
+            ThroughputHarness.Result result = ThroughputHarness.run(transport, CYCLE_MILLIS, window);
+            
+            assertFalse("client transport left open", transport.isOpen());
+            assertTrue("client socket left open", socket.isClosed());
+            // The stand-in sees the client go and closes its end
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.openConnections() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals("stand-in connections left open", 0, server.openConnections());
+            return result;
+        }
+    }
+    
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    @Test
+    public void connectStreamDestroyCycles() throws Exception {
+        long minutes = Long.getLong("soak.minutes", 0);
+        long durationMillis = minutes > 0 ? TimeUnit.MINUTES.toMillis(minutes) : SMOKE_MILLIS;
+        
+        // Warm up once so class loading and JIT don't count as growth
+        ThroughputHarness.run(config(0), CYCLE_MILLIS, 4);
+        int btThreads = BluetoothConnectionServiceTest.countThreads("bt-");
+        int standInThreads = BluetoothConnectionServiceTest.countThreads("elm327-standin");
+        long heapBefore = usedHeapAfterGc();
+        
+        long end = System.currentTimeMillis() + durationMillis;
+        int cycles = 0;
+        long requests = 0;
+        while (System.currentTimeMillis() < end) {
+            cycles++;
+            int window = 1 + cycles % 8;
+            ThroughputHarness.Result result = cycles % 3 == 0
+                ? socketCycle(config(cycles), window)
+                : ThroughputHarness.run(config(cycles), CYCLE_MILLIS, window);
+            assertTrue("cycle " + cycles, result.requests > 0);
+            assertEquals("cycle " + cycles, result.requests, result.replies);
+            requests += result.requests;
+        }
+        
+        BluetoothConnectionServiceTest.awaitThreads("bt-", btThreads);
+        BluetoothConnectionServiceTest.awaitThreads("elm327-standin", standInThreads);
+        long growth = usedHeapAfterGc() - heapBefore;
+        assertTrue("heap grew " + (growth >> 10) + " KB over " + cycles + " cycles and " + requests + " requests",
+            growth < MAX_HEAP_GROWTH_BYTES);
+    }
+}
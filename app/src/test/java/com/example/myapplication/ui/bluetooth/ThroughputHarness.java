@@ -0,0 +1,142 @@
+package com.example.myapplication.ui.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.example.myapplication.io.LoopbackTransport;
+import com.example.myapplication.io.Transport;
+import com.example.myapplication.standin.Elm327StandIn;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives {@link BluetoothConnectionService} against {@link Elm327StandIn} over a
+ * loopback transport (or any other) and measures sustained reply throughput and end-to-end
+ * latency (sendMessage() to onMessageReceived()).
+ *
+ * Keeps up to {@code window} requests in flight; the stand-in answers in order,
+ * so replies are matched to requests first-in first-out.
+ */
+public class ThroughputHarness {
+    
+    public static class Result {
+        public final int requests;
+        public final int replies;
+        public final double repliesPerSecond;
+        public final long p50Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+        
+        Result(int requests, int replies, double repliesPerSecond, long[] latencies) {
+            this.requests = requests;
+            this.replies = replies;
+            this.repliesPerSecond = repliesPerSecond;
+            Arrays.sort(latencies);
+            this.p50Micros = percentile(latencies, 0.50);
+            this.p99Micros = percentile(latencies, 0.99);
+            this.maxMicros = latencies.length > 0 ? latencies[latencies.length - 1] : 0;
+        }
+        
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "%d requests, %d replies, %.0f replies/s, latency p50 %d us, p99 %d us, max %d us",
+                requests, replies, repliesPerSecond, p50Micros, p99Micros, maxMicros);
+        }
+    }
+    
+    private static final String[] COMMANDS = { "010C", "010D", "0105", "0111", "010C0D11" };
+    
+    public static Result run(Elm327StandIn.Config serverConfig, long durationMillis, int window)
+            throws Exception {
+        LoopbackTransport client = new LoopbackTransport();
+        Elm327StandIn server = new Elm327StandIn(serverConfig);
+        server.start(client.peer());
+        try {
+            return run(client, durationMillis, window);
+        } finally {
+            server.close();
+        }
+    }
+    
+    /**
+     * Run against a stand-in already serving the other end of client, e.g. over a
+     * socket. The service is destroyed at the end, which closes client.
+     */
+    public static Result run(Transport client, long durationMillis, int window) throws Exception {
+        ConcurrentLinkedQueue<Long> sendTimes = new ConcurrentLinkedQueue<>();
+        long[] latencies = new long[1 << 20];
+        AtomicInteger replies = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(window);
+        
+        // Callbacks run inline on the service threads, there is no main looper here
+        BluetoothConnectionService service = new BluetoothConnectionService(null, Runnable::run);
+        service.setConnectionListener(new BluetoothConnectionService.ConnectionListener() {
+            @Override public void onConnected(BluetoothDevice device) { }
+            @Override public void onDisconnected() { }
+            @Override public void onConnectionFailed(String error) { }
+            @Override public void onMessageSent(String message) { }
+            
+            @Override
+            public void onMessageReceived(String message) {
+                long now = System.nanoTime();
+                Long sentAt = sendTimes.poll();
+                if (sentAt == null) return;
+                int index = replies.getAndIncrement();
+                if (index < latencies.length) {
+                    latencies[index] = (now - sentAt) / 1000;
+                }
+                inFlight.release();
+            }
+        });
+        service.attach(client, null);
+        
+        int requests = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        while (System.nanoTime() < end) {
+            if (!inFlight.tryAcquire(10, TimeUnit.MILLISECONDS)) continue;
+            sendTimes.add(System.nanoTime());
+            service.sendMessage(COMMANDS[requests % COMMANDS.length]);
+            requests++;
+        }
+        // Let outstanding requests drain
+        inFlight.tryAcquire(window, 2, TimeUnit.SECONDS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        
+        service.destroy();
+        
+        int received = replies.get();
+        return new Result(requests, received, received / elapsedSeconds,
+            Arrays.copyOf(latencies, Math.min(received, latencies.length)));
+    }
+    
+    public static void main(String[] args) throws Exception {
+        long durationMillis = args.length > 0 ? Long.parseLong(args[0]) : 10_000;
+        
+        Elm327StandIn.Config fast = new Elm327StandIn.Config();
+        System.out.println("unthrottled, window 1:   " + run(fast, durationMillis, 1));
+        System.out.println("unthrottled, window 8:   " + run(fast, durationMillis, 8));
+        
+        Elm327StandIn.Config elm = new Elm327StandIn.Config();
+        elm.elmFraming = true;
+        elm.latencyMicros = 30_000;
+        elm.jitterMicros = 20_000;
+        elm.fragmentSize = 7;
+        System.out.println("ELM-like, 30+-20 ms:     " + run(elm, durationMillis, 1));
+        
+        Elm327StandIn.Config limited = new Elm327StandIn.Config();
+        limited.maxRepliesPerSecond = 200;
+        limited.fragmentSize = 3;
+        System.out.println("200 replies/s, 3 B frags: " + run(limited, durationMillis, 4));
+    }
+}
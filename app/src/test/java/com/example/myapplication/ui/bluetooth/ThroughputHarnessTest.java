@@ -0,0 +1,74 @@
+package com.example.myapplication.ui.bluetooth;
+
+import com.example.myapplication.standin.Elm327StandIn;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Short runs of {@link ThroughputHarness}; run its main() for longer measurements.
+ *
+ * A floor budget always runs, loose enough that a loaded CI machine stays well
+ * inside it but a regression to one reply per poll tick or a stalled reader
+ * does not. The tight budgets depend on the machine and only run when asked
+ * for, e.g. {@code ./gradlew test -PthroughputBudget}.
+ */
+public class ThroughputHarnessTest {
+    
+    /** Floor for any machine, one to two orders of magnitude below a loopback run */
+    private static final double FLOOR_REPLIES_PER_SECOND = 100;
+    private static final long FLOOR_P99_MICROS = 1_000_000;
+    /** Regression budgets for the loopback path, well below what an idle desktop JVM manages */
+    private static final double MIN_REPLIES_PER_SECOND = 2000;
+    private static final long MAX_P99_MICROS = 50_000;
+    
+    @Test
+    public void everyRequestIsAnswered_unthrottled() throws Exception {
+        ThroughputHarness.Result result = ThroughputHarness.run(new Elm327StandIn.Config(), 1000, 8);
+        
+        assertTrue(result.requests > 0);
+        assertEquals(result.requests, result.replies);
+    }
+    
+    @Test
+    public void staysAboveFloor() throws Exception {
+        ThroughputHarness.Result result = ThroughputHarness.run(new Elm327StandIn.Config(), 1000, 8);
+        
+        assertEquals(result.requests, result.replies);
+        assertTrue(result.repliesPerSecond + " replies/s", result.repliesPerSecond >= FLOOR_REPLIES_PER_SECOND);
+        assertTrue("p99 " + result.p99Micros + " us", result.p99Micros <= FLOOR_P99_MICROS);
+    }
+    
+    @Test
+    public void staysWithinBudget() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("throughput.budget"));
+        ThroughputHarness.Result result = ThroughputHarness.run(new Elm327StandIn.Config(), 1000, 8);
+        
+        assertTrue(result.repliesPerSecond + " replies/s", result.repliesPerSecond >= MIN_REPLIES_PER_SECOND);
+        assertTrue("p99 " + result.p99Micros + " us", result.p99Micros <= MAX_P99_MICROS);
+    }
+    
+    @Test
+    public void fragmentedElmReplies_areReassembled() throws Exception {
+        Elm327StandIn.Config config = new Elm327StandIn.Config();
+        config.elmFraming = true;
+        config.fragmentSize = 3;
+        config.latencyMicros = 2_000;
+        config.jitterMicros = 1_000;
+        ThroughputHarness.Result result = ThroughputHarness.run(config, 1000, 1);
+        
+        assertEquals(result.requests, result.replies);
+        assertTrue("p50 " + result.p50Micros + " us", result.p50Micros >= 2_000);
+    }
+    
+    @Test
+    public void rateLimitIsHonoured() throws Exception {
+        Elm327StandIn.Config config = new Elm327StandIn.Config();
+        config.maxRepliesPerSecond = 100;
+        ThroughputHarness.Result result = ThroughputHarness.run(config, 1000, 4);
+        
+        assertTrue(result.repliesPerSecond + " replies/s", result.repliesPerSecond <= 110);
+    }
+}
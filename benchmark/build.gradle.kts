@@ -0,0 +1,36 @@
+// JVM-only JMH benchmarks for the protocol and parsing hot paths.
+// Run with: ./gradlew :benchmark:jmh  (results in build/results/jmh)
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The benchmarked classes live in the app module but have no Android dependencies,
+// so they are compiled straight from its sources instead of through the APK build.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/myapplication/io/**",
+                "com/example/myapplication/obd/**",
+                "com/example/myapplication/util/**"
+            )
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // Report allocations per operation next to throughput
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
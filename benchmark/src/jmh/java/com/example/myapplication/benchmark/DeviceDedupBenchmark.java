@@ -0,0 +1,73 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.util.KeyedList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One discovery round of the device list: every device is reported three times,
+ * as ACTION_FOUND tends to do, and a list snapshot is taken for each new device.
+ * {@code linearScan} is the list walk HomeFragment used to do, kept as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceDedupBenchmark {
+    
+    @Param({"10", "100"})
+    public int deviceCount;
+    
+    private String[] reports;
+    
+    @Setup
+    public void setup() {
+        reports = new String[deviceCount * 3];
+        for (int i = 0; i < reports.length; i++) {
+            int device = i % deviceCount;
+            reports[i] = String.format(Locale.US, "00:11:22:33:%02X:%02X", device >> 8, device & 0xFF);
+        }
+    }
+    
+    @Benchmark
+    public List<String> keyedList() {
+        KeyedList<String> devices = new KeyedList<>(address -> address);
+        List<String> shown = null;
+        for (String address : reports) {
+            if (devices.containsKey(address)) {
+                continue;
+            }
+            devices.add(address);
+            shown = devices.snapshot();
+        }
+        return shown;
+    }
+    
+    @Benchmark
+    public List<String> linearScan() {
+        List<String> devices = new ArrayList<>();
+        List<String> shown = null;
+        outer:
+        for (String address : reports) {
+            for (String known : devices) {
+                if (known.equals(address)) {
+                    continue outer;
+                }
+            }
+            devices.add(address);
+            shown = new ArrayList<>(devices);
+        }
+        return shown;
+    }
+}
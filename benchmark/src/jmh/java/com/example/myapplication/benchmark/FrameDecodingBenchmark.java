@@ -0,0 +1,90 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.io.LineFramer;
+import com.example.myapplication.io.LoopbackTransport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames/sec of the receive path: raw bytes in, complete lines out.
+ * The stream is cut into chunks of {@code chunkSize} to mimic how RFCOMM reads
+ * fragment the incoming data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameDecodingBenchmark {
+    
+    static final int FRAMES = 256;
+    
+    @Param({"7", "64", "1024"})
+    public int chunkSize;
+    
+    private byte[] stream;
+    private LineFramer framer;
+    private LoopbackTransport client;
+    private LoopbackTransport server;
+    private byte[] readBuffer;
+    
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        String[] replies = { "41 0C 1A F8", "41 0D 32", "41 05 7B", "41 11 4C", "41 0C 1B 20 0D 33" };
+        for (int i = 0; i < FRAMES; i++) {
+            sb.append(replies[i % replies.length]).append("\r\r>");
+        }
+        stream = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        framer = new LineFramer();
+        client = new LoopbackTransport(stream.length * 2);
+        server = client.peer();
+        readBuffer = new byte[1024];
+    }
+    
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void decodeChunks(Blackhole bh) {
+        LineFramer.LineListener sink = bh::consume;
+        for (int offset = 0; offset < stream.length; offset += chunkSize) {
+            framer.feed(stream, offset, Math.min(chunkSize, stream.length - offset), sink);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void decodeFromLoopback(Blackhole bh) throws IOException {
+        OutputStream out = server.getOutputStream();
+        for (int offset = 0; offset < stream.length; offset += chunkSize) {
+            out.write(stream, offset, Math.min(chunkSize, stream.length - offset));
+        }
+        
+        InputStream in = client.getInputStream();
+        LineFramer.LineListener sink = bh::consume;
+        int remaining = stream.length;
+        while (remaining > 0) {
+            int n = in.read(readBuffer, 0, Math.min(readBuffer.length, remaining));
+            framer.feed(readBuffer, 0, n, sink);
+            remaining -= n;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.util.MessageLogBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending one received message to a log that already holds {@code existingLines}.
+ * {@code stringConcat} reproduces the old getText() + "\n" + entry approach as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageLogBenchmark {
+    
+    private static final String MESSAGE = "Received: 41 0C 1A F8";
+    
+    @Param({"50", "500"})
+    public int existingLines;
+    
+    private MessageLogBuffer buffer;
+    private String concatLog;
+    private long now;
+    
+    @Setup
+    public void setup() {
+        now = System.currentTimeMillis();
+        buffer = new MessageLogBuffer(existingLines);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < existingLines; i++) {
+            buffer.append(now, MESSAGE);
+            sb.append("\n[12:00:00] ").append(MESSAGE);
+        }
+        concatLog = sb.toString();
+    }
+    
+    @Benchmark
+    public CharSequence bufferAppend() {
+        now += 50;
+        buffer.append(now, MESSAGE);
+        return buffer.getText();
+    }
+    
+    @Benchmark
+    public String stringConcat() {
+        String timestamp = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(new Date());
+        String newLog = concatLog + "\n" + "[" + timestamp + "] " + MESSAGE;
+        // Keep the baseline at a steady size instead of letting it grow every iteration
+        concatLog = newLog.substring(newLog.indexOf('\n', 1));
+        return newLog;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.io.OutboundBatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of queueing {@code batchSize} commands and writing them out in one flush
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutboundBatchingBenchmark {
+    
+    private static final String[] COMMANDS = { "010C", "010D", "0105", "0111", "010F", "0110" };
+    
+    @Param({"1", "8", "32"})
+    public int batchSize;
+    
+    private OutboundBatcher batcher;
+    private CountingOutputStream out;
+    
+    @Setup
+    public void setup() {
+        out = new CountingOutputStream();
+        batcher = new OutboundBatcher(out);
+    }
+    
+    @Benchmark
+    public List<String> enqueueAndFlush() throws IOException {
+        for (int i = 0; i < batchSize; i++) {
+            batcher.enqueue(COMMANDS[i % COMMANDS.length]);
+        }
+        return batcher.flush();
+    }
+    
+    /**
+     * Stands in for the socket stream, counting writes so they can't be optimised away
+     */
+    static final class CountingOutputStream extends OutputStream {
+        long bytes;
+        long writes;
+        
+        @Override
+        public void write(int b) {
+            bytes++;
+            writes++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            writes++;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.obd.PidParser;
+import com.example.myapplication.obd.SampleSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode 01 response lines decoded into samples, including multi-PID replies
+ * and lines that are not data at all
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PidParsingBenchmark {
+    
+    private static final String[] LINES = {
+        "41 0C 1A F8",
+        "410D32",
+        "41 05 7B",
+        "41 0C 1B 20 0D 33 11 4C",
+        "41 42 35 B2",
+        "NO DATA",
+        "SEARCHING...",
+        "41 10 01 F4",
+    };
+    
+    private PidParser parser;
+    
+    @Setup
+    public void setup() {
+        parser = new PidParser();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void parseLines(Blackhole bh) {
+        SampleSink sink = (pid, time, value) -> bh.consume(value);
+        for (String line : LINES) {
+            bh.consume(parser.parse(line, 0L, sink));
+        }
+    }
+}
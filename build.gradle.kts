@@ -1,4 +1,6 @@
 // Top-level build file where you can add configuration options common to all sub-projects/modules.
 plugins {
     alias(libs.plugins.android.application) apply false
-}
\ No newline at end of file
+    alias(libs.plugins.android.test) apply false
+    alias(libs.plugins.jmh) apply false
+}
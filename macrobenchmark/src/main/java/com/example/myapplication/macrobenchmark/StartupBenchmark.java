@@ -0,0 +1,81 @@
+package com.example.myapplication.macrobenchmark;
+
+import androidx.annotation.OptIn;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.ExperimentalMetricApi;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Cold start measurements of the home screen.
+ *
+ * {@link #coldStartToConnected()} needs a device that has connected to a bonded
+ * adapter once, so the app reconnects to it at launch; the adapter must be in
+ * range. The app calls reportFullyDrawn() on its first connection, so
+ * timeToFullDisplayMs is the cold start to connected time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    
+    private static final String PACKAGE = "com.example.myapplication";
+    private static final int ITERATIONS = 5;
+    private static final long CONNECT_TIMEOUT_MS = 20_000;
+    
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+    
+    @Test
+    public void coldStart() {
+        benchmarkRule.measureRepeated(PACKAGE,
+            Collections.singletonList(new StartupTimingMetric()),
+            new CompilationMode.Partial(),
+            StartupMode.COLD,
+            ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                scope.startActivityAndWait();
+                return Unit.INSTANCE;
+            });
+    }
+    
+    @OptIn(markerClass = ExperimentalMetricApi.class)
+    @Test
+    public void coldStartToConnected() {
+        benchmarkRule.measureRepeated(PACKAGE,
+            Arrays.asList(new StartupTimingMetric(), new TraceSectionMetric("HomeFragment.initialize")),
+            new CompilationMode.Partial(),
+            StartupMode.COLD,
+            ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                scope.startActivityAndWait();
+                UiDevice device = scope.getDevice();
+                Boolean connected = device.wait(Until.hasObject(By.text("Disconnect")), CONNECT_TIMEOUT_MS);
+                if (connected == null || !connected) {
+                    throw new IllegalStateException("Did not reconnect, connect to a bonded adapter once first");
+                }
+                return Unit.INSTANCE;
+            });
+    }
+}